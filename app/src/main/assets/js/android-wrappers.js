@@ -1,8 +1,552 @@
 // 模拟Node.js 模块缓存
 var ModuleCache = {};
 
+// 异步文件请求：AndroidFS.*Async 在后台线程执行，完成后每帧批量回调 _complete
+var AndroidFSAsync = window.AndroidFSAsync = {
+    nextId: 1,
+    callbacks: {},
+
+    // 登记回调，返回请求 id
+    request: function(callback) {
+        var id = this.nextId++;
+        this.callbacks[id] = callback;
+        return id;
+    },
+
+    // 延迟写入的存档重试后仍然失败的记录
+    writeErrors: [],
+
+    // results: [[id, errorCode, hasData], ...]；id 为 0 时为延迟写入失败，第 4 项为路径
+    _complete: function(results) {
+        for (var i = 0; i < results.length; i++) {
+            var id = results[i][0];
+            if (id === 0) {
+                this._writeFailed(results[i][1], results[i][3]);
+                continue;
+            }
+            var callback = this.callbacks[id];
+            delete this.callbacks[id];
+            var data = results[i][2] ? AndroidFS.takeAsyncResult(id) : null;
+            if (callback) {
+                try {
+                    callback(results[i][1], data);
+                } catch (err) {
+                    console.error(err);
+                }
+            }
+        }
+    },
+
+    // 存档已经从 writeFileSync 返回成功，只能事后通知：记录、输出错误并派发 androidfswriteerror 事件
+    _writeFailed: function(code, path) {
+        var err = createFsError(code, 'write', path);
+        this.writeErrors.push(err);
+        console.error('Failed to write ' + path + ': ' + err.message);
+        try {
+            window.dispatchEvent(new CustomEvent('androidfswriteerror', { detail: err }));
+        } catch (e) {
+            console.error(e);
+        }
+    }
+};
+
+// 二进制通道：WebPlayerView 在页面加载完成后通过 postMessage 送来 MessagePort，之后 ArrayBuffer 直接传递
+// 协议见 BinaryChannel.java；端口到达之前（或 WebView 不支持时）readFile/writeFile 退回 latin1 字符串
+var AndroidFSBinary = window.AndroidFSBinary = {
+    port: null,
+    nextId: 1,
+    callbacks: {},
+
+    isReady: function() {
+        return this.port !== null;
+    },
+
+    // callback(errorCode, Buffer)
+    read: function(path, callback) {
+        var id = this.nextId++;
+        this.callbacks[id] = callback;
+        this.port.postMessage('r' + id + '\n' + path);
+    },
+
+    // bytes 为 Uint8Array；callback(errorCode)
+    write: function(path, bytes, callback) {
+        var id = this.nextId++;
+        this.callbacks[id] = callback;
+        var pathBytes = binaryToBytes(unescape(encodeURIComponent(path)));
+        var message = new Uint8Array(8 + pathBytes.length + bytes.length);
+        var view = new DataView(message.buffer);
+        view.setInt32(0, id);
+        view.setInt32(4, pathBytes.length);
+        message.set(pathBytes, 8);
+        message.set(bytes, 8 + pathBytes.length);
+        this.port.postMessage(message.buffer);
+    },
+
+    _onMessage: function(data) {
+        var id;
+        var code = null;
+        var result = null;
+        if (typeof data === 'string') {
+            var newline = data.indexOf('\n');
+            id = parseInt(data.substring(1, newline < 0 ? data.length : newline), 10);
+            if (data.charAt(0) === 'e') code = data.substring(newline + 1);
+        } else {
+            id = new DataView(data).getInt32(0);
+            result = toBuffer(new Uint8Array(data, 4));
+        }
+        var callback = this.callbacks[id];
+        delete this.callbacks[id];
+        if (callback) {
+            try {
+                callback(code, result);
+            } catch (err) {
+                console.error(err);
+            }
+        }
+    },
+
+    // 设备上的吞吐量对比（在 DevTools 控制台调用）：每种大小（MB）分别经二进制通道和 latin1 字符串写入、读回，
+    // 计时包括 JS 端的转换；读回的数据逐字节校验（不计时），结果输出到控制台
+    // 例：AndroidFSBinary.benchmark([1, 10, 50], function(results) { ... })
+    benchmark: function(sizes, done) {
+        var self = this;
+        var path = 'binary-benchmark.tmp';
+        var results = [];
+        sizes = sizes || [1, 10, 50];
+        function mbps(bytes, ms) {
+            return Math.round(bytes / 1048576 / Math.max(ms, 0.001) * 1000 * 10) / 10;
+        }
+        function same(a, b) {
+            if (!a || a.length !== b.length) return false;
+            for (var i = 0; i < b.length; i++) {
+                if (a[i] !== b[i]) return false;
+            }
+            return true;
+        }
+        function next(index) {
+            if (index >= sizes.length) {
+                AndroidFS.unlinkSync(path);
+                if (done) done(results);
+                return;
+            }
+            // 覆盖所有字节值，包括不是合法 UTF-8 的序列
+            var bytes = new Uint8Array(sizes[index] * 1048576);
+            for (var i = 0; i < bytes.length; i++) {
+                bytes[i] = (i * 31 + (i >> 8)) & 255;
+            }
+            var result = { mb: sizes[index] };
+            var start = performance.now();
+            var written = AndroidFS.writeBinarySync(path, bytesToBinary(bytes, 0, bytes.length));
+            result.stringWriteMBps = mbps(bytes.length, performance.now() - start);
+            start = performance.now();
+            var read = binaryToBytes(AndroidFS.readFileSync(path, 'latin1') || '');
+            result.stringReadMBps = mbps(bytes.length, performance.now() - start);
+            result.stringOk = written && same(read, bytes);
+            read = null;
+            if (!self.isReady()) {
+                results.push(result);
+                console.log('AndroidFSBinary.benchmark: ' + JSON.stringify(result) + ' (no port)');
+                next(index + 1);
+                return;
+            }
+            start = performance.now();
+            self.write(path, bytes, function(code) {
+                result.portWriteMBps = mbps(bytes.length, performance.now() - start);
+                if (code) {
+                    result.portOk = false;
+                    results.push(result);
+                    console.log('AndroidFSBinary.benchmark: ' + JSON.stringify(result) + ' (write failed: ' + code + ')');
+                    next(index + 1);
+                    return;
+                }
+                start = performance.now();
+                self.read(path, function(code, data) {
+                    result.portReadMBps = mbps(bytes.length, performance.now() - start);
+                    result.portOk = !code && same(data, bytes);
+                    results.push(result);
+                    console.log('AndroidFSBinary.benchmark: ' + JSON.stringify(result));
+                    next(index + 1);
+                });
+            });
+        }
+        next(0);
+    }
+};
+
+window.addEventListener('message', function(event) {
+    if (event.data !== 'AndroidFSPort' || !event.ports || !event.ports.length) return;
+    var port = event.ports[0];
+    port.onmessage = function(e) {
+        AndroidFSBinary._onMessage(e.data);
+    };
+    AndroidFSBinary.port = port;
+});
+
+// 构造与 Node.js 相同格式的错误
+function createFsError(code, syscall, path) {
+    var messages = {
+        ENOENT: 'no such file or directory',
+        EEXIST: 'file already exists',
+        ENOTEMPTY: 'directory not empty',
+        EBADF: 'bad file descriptor',
+        EIO: 'i/o error'
+    };
+    var errnos = { ENOENT: -2, EEXIST: -17, ENOTEMPTY: -39, EBADF: -9, EIO: -5 };
+    var err = new Error(code + ': ' + (messages[code] || 'unknown error') + ', ' + syscall + ' \'' + path + '\'');
+    err.code = code;
+    err.errno = errnos[code];
+    err.syscall = syscall;
+    err.path = path;
+    return err;
+}
+
+// latin1 二进制字符串（每个字符一个字节）与字节数组互转
+function binaryToBytes(str) {
+    var bytes = new Uint8Array(str.length);
+    for (var i = 0; i < str.length; i++) {
+        bytes[i] = str.charCodeAt(i);
+    }
+    return toBuffer(bytes);
+}
+
+// 有 Buffer 时包装成 Buffer（不复制）；没有时保留 toString()，按 UTF-8 解码，兼容把读取结果当字符串用的插件
+function toBuffer(bytes) {
+    if (typeof Buffer !== 'undefined') {
+        return Buffer.from(bytes.buffer, bytes.byteOffset, bytes.length);
+    }
+    bytes.toString = function(encoding) {
+        if (encoding === 'latin1' || encoding === 'binary') {
+            return bytesToBinary(this, 0, this.length);
+        }
+        return new TextDecoder('utf-8').decode(this);
+    };
+    return bytes;
+}
+
+// Buffer、TypedArray、DataView、ArrayBuffer 统一成 Uint8Array（不复制）
+function toBytes(data) {
+    if (data instanceof Uint8Array) return data;
+    if (ArrayBuffer.isView(data)) return new Uint8Array(data.buffer, data.byteOffset, data.byteLength);
+    return new Uint8Array(data);
+}
+
+// readFile 等的 options：字符串或 {encoding}；没有编码时返回 null（结果为 Buffer）
+function getEncoding(options) {
+    if (options && typeof options === 'string') return options;
+    if (options && options.encoding) return options.encoding;
+    return null;
+}
+
+function isUtf8(encoding) {
+    return typeof encoding === 'string' && /^utf-?8$/i.test(encoding);
+}
+
+function bytesToBinary(bytes, offset, length) {
+    var chunks = [];
+    var end = offset + length;
+    // 分段调用 fromCharCode，避免参数过多导致栈溢出
+    for (var i = offset; i < end; i += 8192) {
+        chunks.push(String.fromCharCode.apply(null, bytes.subarray(i, Math.min(i + 8192, end))));
+    }
+    return chunks.join('');
+}
+
+// fs.createReadStream 返回的只读流，通过 AndroidFS.readAsync 在后台分块读取
+function AndroidReadStream(path, fd, options) {
+    this.path = path;
+    this.fd = fd;
+    this.bytesRead = 0;
+    this.pos = options.start || 0;
+    this.end = options.end !== undefined ? options.end : Infinity;
+    this.highWaterMark = options.highWaterMark || 64 * 1024;
+    this.autoClose = options.autoClose !== false;
+    this.decoder = null;
+    if (options.encoding && typeof TextDecoder !== 'undefined') {
+        this.decoder = new TextDecoder(options.encoding === 'utf8' ? 'utf-8' : options.encoding);
+    }
+    this.flowing = false;
+    this.reading = false;
+    this.destroyed = false;
+    this.listeners = {};
+}
+
+AndroidReadStream.prototype.on = function(event, listener) {
+    (this.listeners[event] = this.listeners[event] || []).push(listener);
+    if (event === 'data' && !this.flowing) {
+        this.resume();
+    }
+    return this;
+};
+
+AndroidReadStream.prototype.addListener = AndroidReadStream.prototype.on;
+
+AndroidReadStream.prototype.once = function(event, listener) {
+    var self = this;
+    function wrapper() {
+        self.removeListener(event, wrapper);
+        listener.apply(self, arguments);
+    }
+    return this.on(event, wrapper);
+};
+
+AndroidReadStream.prototype.removeListener = function(event, listener) {
+    var list = this.listeners[event];
+    if (list) {
+        var index = list.indexOf(listener);
+        if (index >= 0) list.splice(index, 1);
+    }
+    return this;
+};
+
+AndroidReadStream.prototype.off = AndroidReadStream.prototype.removeListener;
+
+AndroidReadStream.prototype.emit = function(event) {
+    var list = (this.listeners[event] || []).slice();
+    var args = Array.prototype.slice.call(arguments, 1);
+    for (var i = 0; i < list.length; i++) {
+        list[i].apply(this, args);
+    }
+    return list.length > 0;
+};
+
+AndroidReadStream.prototype.pause = function() {
+    this.flowing = false;
+    return this;
+};
+
+AndroidReadStream.prototype.resume = function() {
+    if (!this.flowing && !this.destroyed) {
+        this.flowing = true;
+        var self = this;
+        Promise.resolve().then(function() {
+            self._read();
+        });
+    }
+    return this;
+};
+
+AndroidReadStream.prototype.pipe = function(dest) {
+    this.on('data', function(chunk) {
+        dest.write(chunk);
+    });
+    this.on('end', function() {
+        if (dest.end) dest.end();
+    });
+    return dest;
+};
+
+AndroidReadStream.prototype._read = function() {
+    if (!this.flowing || this.reading || this.destroyed) return;
+    if (this.fd < 0) {
+        this.destroy(createFsError('ENOENT', 'open', this.path));
+        return;
+    }
+    var remaining = this.end - this.pos + 1;
+    if (remaining <= 0) {
+        this._finish();
+        return;
+    }
+    var self = this;
+    this.reading = true;
+    var id = AndroidFSAsync.request(function(code, data) {
+        self.reading = false;
+        if (self.destroyed) return;
+        if (code) {
+            self.destroy(createFsError(code, 'read', self.path));
+            return;
+        }
+        if (!data) {
+            self._finish();
+            return;
+        }
+        self.pos += data.length;
+        self.bytesRead += data.length;
+        var bytes = binaryToBytes(data);
+        self.emit('data', self.decoder ? self.decoder.decode(bytes, { stream: true }) : bytes);
+        self._read();
+    });
+    AndroidFS.readAsync(id, this.fd, Math.min(this.highWaterMark, remaining), this.pos);
+};
+
+AndroidReadStream.prototype._finish = function() {
+    if (this.decoder) {
+        var rest = this.decoder.decode();
+        if (rest) this.emit('data', rest);
+    }
+    this.emit('end');
+    if (this.autoClose) this.close();
+};
+
+AndroidReadStream.prototype.close = function(callback) {
+    if (this.fd >= 0) {
+        AndroidFS.closeSync(this.fd);
+        this.fd = -1;
+    }
+    this.destroyed = true;
+    this.emit('close');
+    if (callback) callback();
+};
+
+AndroidReadStream.prototype.destroy = function(err) {
+    if (this.destroyed) return this;
+    if (err) this.emit('error', err);
+    this.close();
+    return this;
+};
+
+// 批量探测：同一轮事件循环中排队的 exists/stat/readdir/read 合并成一次 AndroidFS.batchSync 调用
+var AndroidFSBatch = window.AndroidFSBatch = {
+    pending: [],
+    // 统计：bridgeCalls 为实际桥接次数，operations 为合并前的操作数，primedHits 为命中预取结果的同步调用数
+    stats: { bridgeCalls: 0, operations: 0, primedHits: 0 },
+
+    codes: { exists: 'e', stat: 's', readdir: 'd', read: 'r' },
+
+    // 同步执行一组操作：ops 为 [{op: 'exists'|'stat'|'readdir'|'read', path: ...}, ...]
+    run: function(ops) {
+        var lines = [];
+        for (var i = 0; i < ops.length; i++) {
+            // 每行一个操作，路径中的 \ 和换行需要转义
+            lines.push(this.codes[ops[i].op] + String(ops[i].path).replace(/\\/g, '\\\\').replace(/\n/g, '\\n'));
+        }
+        this.stats.bridgeCalls++;
+        this.stats.operations += ops.length;
+        var results = JSON.parse(AndroidFS.batchSync(lines.join('\n')));
+        for (var j = 0; j < ops.length; j++) {
+            results[j] = this.decode(ops[j], results[j]);
+        }
+        return results;
+    },
+
+    // 排队一个操作，在当前 tick 结束时统一执行
+    queue: function(op, path, callback) {
+        this.pending.push({ op: op, path: path, callback: callback });
+        if (this.pending.length === 1) {
+            var self = this;
+            Promise.resolve().then(function() {
+                self.flush();
+            });
+        }
+    },
+
+    flush: function() {
+        var ops = this.pending;
+        this.pending = [];
+        if (ops.length === 0) return;
+        var results = this.run(ops);
+        for (var i = 0; i < ops.length; i++) {
+            try {
+                ops[i].callback(results[i]);
+            } catch (err) {
+                console.error(err);
+            }
+        }
+    },
+
+    // 预取的同步探测结果，键为操作名 + '\n' + 路径；只在当前 tick 内有效，每项只用一次
+    primed: null,
+
+    // 把随后一连串同步探测（existsSync/statSync/readFileSync）提前合并成一次桥接
+    prime: function(ops) {
+        var results = this.run(ops);
+        if (!this.primed) {
+            this.primed = {};
+            var self = this;
+            Promise.resolve().then(function() {
+                self.primed = null;
+            });
+        }
+        for (var i = 0; i < ops.length; i++) {
+            this.primed[ops[i].op + '\n' + ops[i].path] = results[i];
+        }
+    },
+
+    // 取出预取结果；没有时返回 undefined
+    take: function(op, path) {
+        if (!this.primed) return undefined;
+        var key = op + '\n' + path;
+        if (!this.primed.hasOwnProperty(key)) return undefined;
+        var result = this.primed[key];
+        delete this.primed[key];
+        this.stats.primedHits++;
+        return result;
+    },
+
+    // 写入、删除等修改后预取结果作废
+    invalidate: function() {
+        this.primed = null;
+    },
+
+    decode: function(op, result) {
+        if (op.op === 'stat' && result) {
+            result.isFile = function() { return this._isFile; };
+            result.isDirectory = function() { return this._isDirectory; };
+            result.isSymbolicLink = function() { return false; };
+        } else if (op.op === 'read' && result === false) {
+            // 文件过大，单独读取
+            result = AndroidFS.readFileSync(op.path, 'utf-8');
+        }
+        return result;
+    }
+};
+
+// 文件模块按规范 id 缓存（./a.js、a.js、../js/a.js 指向同一个模块）
+var FileModules = {};
+// 解析结果缓存：所在目录 + '\n' + 参数 -> 规范 id
+var ModuleResolutions = {};
+
+// 加载文件模块；解析和读取源码由 AndroidFS.resolveModule 一次完成
+function loadFileModule(request, parentDir) {
+    var key = parentDir + '\n' + request;
+    var id = ModuleResolutions[key];
+    if (id && FileModules[id]) {
+        return FileModules[id].exports;
+    }
+    var resolved = window.AndroidFS ? AndroidFS.resolveModule(request, parentDir) : null;
+    if (!resolved) {
+        var err = new Error('Cannot find module \'' + request + '\'');
+        err.code = 'MODULE_NOT_FOUND';
+        throw err;
+    }
+    var info = JSON.parse(resolved);
+    ModuleResolutions[key] = info.id;
+    if (FileModules[info.id]) {
+        return FileModules[info.id].exports;
+    }
+
+    // 先登记再执行，循环依赖时返回未完成的 exports（与 Node.js 一致）
+    var module = { id: info.id, filename: info.id, exports: {}, loaded: false };
+    FileModules[info.id] = module;
+    try {
+        if (info.json) {
+            module.exports = JSON.parse(info.source);
+        } else {
+            var dirname = info.id.substring(0, info.id.lastIndexOf('/')) || '/';
+            var fn = new Function('exports', 'require', 'module', '__filename', '__dirname',
+                info.source + '\n//# sourceURL=' + info.id);
+            fn.call(module.exports, module.exports, createRequire(dirname), module, info.id, dirname);
+        }
+    } catch (e) {
+        delete FileModules[info.id];
+        throw e;
+    }
+    module.loaded = true;
+    return module.exports;
+}
+
+// 模块内部的 require，相对路径以模块所在目录为基准
+function createRequire(dirname) {
+    return function(moduleName) {
+        return requireModule(moduleName, dirname);
+    };
+}
+
 // 模拟 require 函数
 window.require = function(moduleName) {
+    return requireModule(moduleName, '/');
+};
+
+function requireModule(moduleName, parentDir) {
     if (ModuleCache[moduleName]) {
         return ModuleCache[moduleName];
     }
@@ -11,21 +555,20 @@ window.require = function(moduleName) {
         case 'fs':
             var fs = {
                 // 同步读取文件
+                // 不指定编码时与 Node.js 一样返回 Buffer（经 latin1 字符串无损传递）
                 readFileSync: function(path, options) {
-                    var encoding = 'utf-8';
-                    if (options && typeof options === 'string') {
-                        encoding = options;
-                    } else if (options && options.encoding) {
-                        encoding = options.encoding;
+                    var encoding = getEncoding(options);
+                    var result = isUtf8(encoding) ? AndroidFSBatch.take('read', path) : undefined;
+                    if (result === undefined) {
+                        result = AndroidFS.readFileSync(path, encoding || 'latin1');
                     }
-                    var result = AndroidFS.readFileSync(path, encoding);
-                    if (!result) {
+                    if (result === null || result === undefined) {
                         var err = new Error('ENOENT: no such file or directory, open \'' + path + '\'');
                         err.code = 'ENOENT';
                         err.errno = -2;
                         throw err;
                     }
-                    return result;
+                    return encoding ? result : binaryToBytes(result);
                 },
                 
                 // 异步读取文件
@@ -35,32 +578,34 @@ window.require = function(moduleName) {
                         options = null;
                     }
                     
-                    var encoding = options && options.encoding || 'utf-8';
+                    var encoding = getEncoding(options);
+                    var done = function(code, data) {
+                        if (!callback) return;
+                        if (code) callback(createFsError(code, 'open', path));
+                        else callback(null, data);
+                    };
                     
-                    // 使用 Promise 包装
-                    new Promise(function(resolve, reject) {
-                        try {
-                            var result = AndroidFS.readFileSync(path, encoding);
-                            if (!result) {
-                                var err = new Error('ENOENT: no such file or directory, open \'' + path + '\'');
-                                err.code = 'ENOENT';
-                                err.errno = -2;
-                                throw err;
-                            }
-                            resolve(result);
-                        } catch (err) {
-                            reject(err);
-                        }
-                    }).then(function(data) {
-                        if (callback) callback(null, data);
-                    }).catch(function(err) {
-                        if (callback) callback(err);
+                    // 二进制内容优先走 MessagePort，直接收到 ArrayBuffer
+                    if (!encoding && AndroidFSBinary.isReady()) {
+                        AndroidFSBinary.read(path, done);
+                        return;
+                    }
+                    // 在后台线程读取，不阻塞主线程
+                    var id = AndroidFSAsync.request(function(code, data) {
+                        done(code, !code && !encoding ? binaryToBytes(data) : data);
                     });
+                    AndroidFS.readFileAsync(id, path, encoding || 'latin1');
                 },
                 
                 // 同步写入文件
                 writeFileSync: function(path, data, options) {
-                    var success = AndroidFS.writeFileSync(path, data);
+                    var success;
+                    if (typeof data === 'string') {
+                        success = AndroidFS.writeFileSync(path, data);
+                    } else {
+                        var bytes = toBytes(data);
+                        success = AndroidFS.writeBinarySync(path, bytesToBinary(bytes, 0, bytes.length));
+                    }
                     if (!success) {
                         throw new Error('Failed to write file: ' + path);
                     }
@@ -73,34 +618,45 @@ window.require = function(moduleName) {
                         options = null;
                     }
                     
-                    new Promise(function(resolve, reject) {
-                        try {
-                            var success = AndroidFS.writeFileSync(path, data);
-                            if (success) {
-                                resolve();
-                            } else {
-                                reject(new Error('Write failed'));
-                            }
-                        } catch (err) {
-                            reject(err);
+                    var done = function(code) {
+                        if (callback) callback(code ? createFsError(code, 'open', path) : null);
+                    };
+                    if (typeof data !== 'string') {
+                        var bytes = toBytes(data);
+                        if (AndroidFSBinary.isReady()) {
+                            AndroidFSBinary.write(path, bytes, done);
+                        } else {
+                            var ok = AndroidFS.writeBinarySync(path, bytesToBinary(bytes, 0, bytes.length));
+                            setTimeout(function() {
+                                done(ok ? null : 'EIO');
+                            }, 0);
                         }
-                    }).then(function() {
-                        if (callback) callback(null);
-                    }).catch(function(err) {
-                        if (callback) callback(err);
-                    });
+                        return;
+                    }
+                    var id = AndroidFSAsync.request(done);
+                    AndroidFS.writeFileAsync(id, path, data);
                 },
                 
                 // 检查文件是否存在
                 existsSync: function(path) {
-                    return AndroidFS.existsSync(path);
+                    var primed = AndroidFSBatch.take('exists', path);
+                    return primed !== undefined ? primed : AndroidFS.existsSync(path);
                 },
                 
                 // 异步检查文件是否存在
                 exists: function(path, callback) {
-                    setTimeout(function() {
-                        callback(AndroidFS.existsSync(path));
-                    }, 0);
+                    AndroidFSBatch.queue('exists', path, callback);
+                },
+                
+                // 批量同步探测，一次桥接返回所有结果（不存在时对应项为 null/false）
+                // 例：fs.batchSync([{op: 'exists', path: 'save/file1.rpgsave'}, {op: 'stat', path: 'save'}])
+                batchSync: function(ops) {
+                    return AndroidFSBatch.run(ops);
+                },
+                
+                // 在当前 tick 内合并的异步探测
+                probe: function(op, path, callback) {
+                    AndroidFSBatch.queue(op, path, callback);
                 },
                 
                 // 读取目录
@@ -115,18 +671,26 @@ window.require = function(moduleName) {
                 },
                 
                 // 异步读取目录
-                readdir: function(path, callback) {
-                    Promise.resolve().then(() => {
-                        return JSON.parse(AndroidFS.readdirSync(path));
-                    }).then((files) => {
+                readdir: function(path, options, callback) {
+                    if (typeof options === 'function') {
+                        callback = options;
+                        options = null;
+                    }
+                    
+                    var id = AndroidFSAsync.request(function(code, json) {
+                        if (!callback) return;
+                        if (code) {
+                            callback(createFsError(code, 'scandir', path));
+                            return;
+                        }
+                        var files = JSON.parse(json);
                         // 确保 files 是一个数组
                         if (!Array.isArray(files)) {
                             files = [];
                         }
-                        if (callback) callback(null, files);
-                    }).catch((err) => {
-                        if (callback) callback(err);
+                        callback(null, files);
                     });
+                    AndroidFS.readdirAsync(id, path);
                 },
                 
                 // 创建目录
@@ -152,22 +716,10 @@ window.require = function(moduleName) {
                         options = null;
                     }
                     
-                    new Promise(function(resolve, reject) {
-                        try {
-                            var success = AndroidFS.mkdirSync(path);
-                            if (success) {
-                                resolve();
-                            } else {
-                                reject(new Error('Failed to create directory' + path));
-                            }
-                        } catch (err) {
-                            reject(err);
-                        }
-                    }).then(function() {
-                        if (callback) callback(null);
-                    }).catch(function(err) {
-                        if (callback) callback(err);
+                    var id = AndroidFSAsync.request(function(code) {
+                        if (callback) callback(code ? createFsError(code, 'mkdir', path) : null);
                     });
+                    AndroidFS.mkdirAsync(id, path);
                 },
                 
                 // 异步删除目录
@@ -177,22 +729,10 @@ window.require = function(moduleName) {
                         options = null;
                     }
                     
-                    new Promise(function(resolve, reject) {
-                        try {
-                            var success = AndroidFS.rmdirSync(path);
-                            if (success) {
-                                resolve();
-                            } else {
-                                reject(new Error('Failed to remove directory: ' + path));
-                            }
-                        } catch (err) {
-                            reject(err);
-                        }
-                    }).then(function() {
-                        if (callback) callback(null);
-                    }).catch(function(err) {
-                        if (callback) callback(err);
+                    var id = AndroidFSAsync.request(function(code) {
+                        if (callback) callback(code ? createFsError(code, 'rmdir', path) : null);
                     });
+                    AndroidFS.rmdirAsync(id, path);
                 },
                 
                 // 删除文件
@@ -205,27 +745,17 @@ window.require = function(moduleName) {
                 
                 // 异步删除文件
                 unlink: function(path, callback) {
-                    new Promise(function(resolve, reject) {
-                        try {
-                            var success = AndroidFS.unlinkSync(path);
-                            if (success) {
-                                resolve();
-                            } else {
-                                reject(new Error('Failed to delete file'));
-                            }
-                        } catch (err) {
-                            reject(err);
-                        }
-                    }).then(function() {
-                        if (callback) callback(null);
-                    }).catch(function(err) {
-                        if (callback) callback(err);
+                    var id = AndroidFSAsync.request(function(code) {
+                        if (callback) callback(code ? createFsError(code, 'unlink', path) : null);
                     });
+                    AndroidFS.unlinkAsync(id, path);
                 },
                 
                 // 获取文件信息
                 statSync: function(path) {
-                    var json = AndroidFS.statSync(path);
+                    var primed = AndroidFSBatch.take('stat', path);
+                    if (primed) return primed;
+                    var json = primed === null ? null : AndroidFS.statSync(path);
                     if (!json) {
                         var err = new Error('ENOENT: no such file or directory, stat \'' + path + '\'');
                         err.code = 'ENOENT';
@@ -242,46 +772,122 @@ window.require = function(moduleName) {
                 },
                 
                 // 异步获取文件信息
-                stat: function(path, callback) {
-                    new Promise(function(resolve, reject) {
-                        try {
-                            var json = AndroidFS.statSync(path);
-                            if (!json) {
-                                reject(new Error('ENOENT'));
-                                return;
-                            }
-                            var stat = JSON.parse(json);
-                            stat.isFile = function() { return this._isFile; };
-                            stat.isDirectory = function() { return this._isDirectory; };
-                            resolve(stat);
-                        } catch (err) {
-                            reject(err);
-                        }
-                    }).then(function(stat) {
-                        if (callback) callback(null, stat);
-                    }).catch(function(err) {
-                        if (callback) callback(err);
+                stat: function(path, options, callback) {
+                    if (typeof options === 'function') {
+                        callback = options;
+                        options = null;
+                    }
+                    
+                    var id = AndroidFSAsync.request(function(code, json) {
+                        if (!callback) return;
+                        if (code) {
+                            callback(createFsError(code, 'stat', path));
+                            return;
+                        }
+                        var stat = JSON.parse(json);
+                        stat.isFile = function() { return this._isFile; };
+                        stat.isDirectory = function() { return this._isDirectory; };
+                        stat.isSymbolicLink = function() { return false; };
+                        callback(null, stat);
                     });
+                    AndroidFS.statAsync(id, path);
                 },
                 
-                // 重命名文件
+                // 重命名文件（原生 rename，不读写内容）
                 renameSync: function(oldPath, newPath) {
-                    // 简单的重命名实现
-                    var content = AndroidFS.readFileSync(oldPath, 'utf-8');
-                    if (content === null) {
-                        throw new Error('ENOENT: no such file or directory');
+                    if (!AndroidFS.renameSync(oldPath, newPath)) {
+                        throw createFsError(AndroidFS.existsSync(oldPath) ? 'EIO' : 'ENOENT', 'rename', oldPath);
                     }
-                    AndroidFS.writeFileSync(newPath, content);
-                    AndroidFS.unlinkSync(oldPath);
                 },
                 
-                // 追加文件内容
+                // 追加文件内容（只写入新增部分）
                 appendFileSync: function(path, data, options) {
-                    var existing = AndroidFS.readFileSync(path, 'utf-8');
-                    if (existing === null) {
-                        existing = '';
+                    if (!AndroidFS.appendFileSync(path, String(data))) {
+                        throw createFsError('EIO', 'open', path);
+                    }
+                },
+                
+                // 打开文件，返回 fd
+                openSync: function(path, flags, mode) {
+                    var fd = AndroidFS.openSync(path, flags || 'r');
+                    if (fd === -1) throw createFsError('ENOENT', 'open', path);
+                    if (fd < 0) throw createFsError('EIO', 'open', path);
+                    return fd;
+                },
+                
+                // 定位读取到 buffer，返回读取的字节数
+                readSync: function(fd, buffer, offset, length, position) {
+                    if (offset && typeof offset === 'object') {
+                        position = offset.position;
+                        length = offset.length;
+                        offset = offset.offset;
+                    }
+                    offset = offset || 0;
+                    if (length === undefined) length = buffer.length - offset;
+                    var data = AndroidFS.readSync(fd, length, position === null || position === undefined ? -1 : position);
+                    if (data === null) throw createFsError('EBADF', 'read', '');
+                    for (var i = 0; i < data.length; i++) {
+                        buffer[offset + i] = data.charCodeAt(i);
+                    }
+                    return data.length;
+                },
+                
+                // 写入字符串或字节数组，返回写入的字节数
+                writeSync: function(fd, data, offset, length, position) {
+                    var written;
+                    if (typeof data === 'string') {
+                        // writeSync(fd, string[, position[, encoding]])
+                        position = offset;
+                        written = AndroidFS.writeSync(fd, data, typeof position === 'number' ? position : -1, 'utf8');
+                    } else {
+                        var bytes = toBytes(data);
+                        offset = offset || 0;
+                        if (length === undefined) length = bytes.length - offset;
+                        written = AndroidFS.writeSync(fd, bytesToBinary(bytes, offset, length),
+                            typeof position === 'number' ? position : -1, 'latin1');
+                    }
+                    if (written < 0) throw createFsError('EBADF', 'write', '');
+                    return written;
+                },
+                
+                // 关闭 fd
+                closeSync: function(fd) {
+                    if (!AndroidFS.closeSync(fd)) throw createFsError('EBADF', 'close', '');
+                },
+                
+                // 按 fd 获取文件信息
+                fstatSync: function(fd) {
+                    var json = AndroidFS.fstatSync(fd);
+                    if (!json) throw createFsError('EBADF', 'fstat', '');
+                    var stat = JSON.parse(json);
+                    stat.isFile = function() { return this._isFile; };
+                    stat.isDirectory = function() { return this._isDirectory; };
+                    stat.isSymbolicLink = function() { return false; };
+                    return stat;
+                },
+                
+                // 分块读取大文件，不一次性载入内存
+                createReadStream: function(path, options) {
+                    if (typeof options === 'string') {
+                        options = { encoding: options };
+                    }
+                    options = options || {};
+                    var fd = options.fd !== undefined ? options.fd : AndroidFS.openSync(path, options.flags || 'r');
+                    return new AndroidReadStream(path, fd, options);
+                },
+                
+                // 复制文件
+                copyFileSync: function(src, dest, mode) {
+                    if (!AndroidFS.copyFileSync(src, dest)) {
+                        throw createFsError(AndroidFS.existsSync(src) ? 'EIO' : 'ENOENT', 'copyfile', src);
+                    }
+                },
+                
+                // 截断文件
+                truncateSync: function(path, len) {
+                    if (!AndroidFS.truncateSync(path, len || 0)) {
+                        throw createFsError(AndroidFS.existsSync(path) ? 'EIO' : 'ENOENT', 'open', path);
                     }
-                    AndroidFS.writeFileSync(path, existing + data);
                 }
             };
             
@@ -351,6 +957,17 @@ window.require = function(moduleName) {
                 }
             };
             
+            // 修改文件系统的调用使预取的探测结果作废
+            ['writeFileSync', 'writeFile', 'appendFileSync', 'mkdirSync', 'mkdir', 'rmdirSync', 'rmdir',
+                'unlinkSync', 'unlink', 'renameSync', 'openSync', 'writeSync', 'copyFileSync', 'truncateSync'
+            ].forEach(function(name) {
+                var method = fs[name];
+                fs[name] = function() {
+                    AndroidFSBatch.invalidate();
+                    return method.apply(fs, arguments);
+                };
+            });
+            
             ModuleCache['fs'] = fs;
             return fs;
             
@@ -866,31 +1483,318 @@ window.require = function(moduleName) {
             return os;
             
         default:
-            // 尝试加载内置模块
-            if (moduleName.startsWith('./') || moduleName.startsWith('../') || moduleName.startsWith('/')) {
-                // 这是相对或绝对路径，尝试加载文件
-                try {
-                    var content = AndroidFS.readFileSync(moduleName, 'utf-8');
-                    if (content === null) {
-                        throw new Error('Cannot find module: ' + moduleName);
-                    }
-                    // 创建一个模块对象
-                    var module = { exports: {} };
-                    var exports = module.exports;
-                    // 执行模块代码
-                    eval(content);
-                    ModuleCache[moduleName] = module.exports;
-                    return module.exports;
-                } catch (err) {
-                    throw new Error('Cannot find module: ' + moduleName);
+            // 相对/绝对路径和 node_modules 中的模块
+            return loadFileModule(moduleName, parentDir);
+    }
+}
+
+// 地图预取：预约场所移动时通知 AndroidPrefetch 在后台读取新地图的资源
+(function() {
+    if (!window.AndroidPrefetch) return;
+    function install() {
+        if (typeof Game_Player === 'undefined' || Game_Player.prototype._androidPrefetchHooked) return;
+        var reserveTransfer = Game_Player.prototype.reserveTransfer;
+        Game_Player.prototype.reserveTransfer = function(mapId) {
+            AndroidPrefetch.prefetchMap(mapId);
+            return reserveTransfer.apply(this, arguments);
+        };
+        Game_Player.prototype._androidPrefetchHooked = true;
+    }
+    // 包装脚本在页面脚本之前注入，等 rpg_objects.js 加载后再挂钩
+    window.addEventListener('load', install);
+})();
+
+// 图片降采样：AndroidImages 缩小过的图片用 BaseTexture.resolution 还原逻辑尺寸，
+// 精灵和远景仍按原图坐标计算，只是纹理占用的显存变小
+(function() {
+    if (!window.AndroidImages) return;
+    var FOLDERS = /img\/(pictures|parallaxes)\//;
+    function scaleOf(bitmap, source) {
+        var url = bitmap._url;
+        if (!url || source !== bitmap._image || !FOLDERS.test(url)) return 0;
+        var scale = AndroidImages.getScale(url);
+        return scale > 0 && scale < 1 ? scale : 0;
+    }
+    function wrapSize(name) {
+        var desc = Object.getOwnPropertyDescriptor(Bitmap.prototype, name);
+        if (!desc || !desc.get) return;
+        Object.defineProperty(Bitmap.prototype, name, {
+            get: function() {
+                var value = desc.get.call(this);
+                return this._androidScale ? Math.round(value / this._androidScale) : value;
+            },
+            configurable: true
+        });
+    }
+    function install() {
+        if (typeof Bitmap === 'undefined' || !Bitmap.prototype._createBaseTexture ||
+            Bitmap.prototype._androidScaleHooked) return;
+        var createBaseTexture = Bitmap.prototype._createBaseTexture;
+        Bitmap.prototype._createBaseTexture = function(source) {
+            var result = createBaseTexture.apply(this, arguments);
+            var scale = scaleOf(this, source);
+            var baseTexture = this._baseTexture;
+            // 换成画布等其他来源时恢复原始尺寸
+            this._androidScale = baseTexture ? scale : 0;
+            if (this._androidScale) {
+                if (baseTexture.setResolution) {
+                    baseTexture.setResolution(scale);
+                } else {
+                    baseTexture.resolution = scale;
+                    baseTexture.width = Math.round(source.width / scale);
+                    baseTexture.height = Math.round(source.height / scale);
                 }
             }
-            
-            // 其他模块抛出错误
-            var err = new Error('Cannot find module: \'' + moduleName + '\'');
-            err.code = 'MODULE_NOT_FOUND';
-            throw err;
+            return result;
+        };
+        wrapSize('width');
+        wrapSize('height');
+        Bitmap.prototype._androidScaleHooked = true;
     }
-};
+    window.addEventListener('load', install);
+})();
+
+// 启动时的存档探测：本地存档模式下 ConfigManager.load / DataManager.loadGlobalInfo 会逐个调用
+// existsSync + readFileSync（最多 maxSavefiles + 3 次桥接），提前合并成一次批量调用
+(function() {
+    if (!window.AndroidFS) return;
+    function probe(ids, readIds) {
+        try {
+            if (!StorageManager.isLocalMode()) return;
+            var ops = [];
+            for (var i = 0; i < ids.length; i++) {
+                ops.push({ op: 'exists', path: StorageManager.localFilePath(ids[i]) });
+            }
+            for (var j = 0; j < readIds.length; j++) {
+                ops.push({ op: 'read', path: StorageManager.localFilePath(readIds[j]) });
+            }
+            AndroidFSBatch.prime(ops);
+        } catch (e) {
+            console.warn('Boot probe failed: ' + e.message);
+        }
+    }
+    function install() {
+        if (typeof StorageManager === 'undefined' || typeof DataManager === 'undefined' ||
+            typeof ConfigManager === 'undefined' || DataManager._androidProbeHooked) return;
+        var loadGlobalInfo = DataManager.loadGlobalInfo;
+        DataManager.loadGlobalInfo = function() {
+            var ids = [0];
+            for (var i = 1; i <= this.maxSavefiles(); i++) {
+                ids.push(i);
+            }
+            probe(ids, [0]);
+            return loadGlobalInfo.apply(this, arguments);
+        };
+        var loadConfig = ConfigManager.load;
+        ConfigManager.load = function() {
+            probe([-1], [-1]);
+            return loadConfig.apply(this, arguments);
+        };
+        DataManager._androidProbeHooked = true;
+    }
+    window.addEventListener('load', install);
+})();
+
+// 启动耗时：Scene_Boot 开始时打点
+(function() {
+    if (!window.AndroidStartup) return;
+    function install() {
+        if (typeof Scene_Boot === 'undefined' || Scene_Boot.prototype._androidStartupHooked) return;
+        var start = Scene_Boot.prototype.start;
+        Scene_Boot.prototype.start = function() {
+            AndroidStartup.mark('sceneBoot');
+            // 渲染进程退出后重建的页面：到这里算恢复完成
+            if (window.AndroidRecovery) AndroidRecovery.onSceneBoot();
+            return start.apply(this, arguments);
+        };
+        Scene_Boot.prototype._androidStartupHooked = true;
+    }
+    window.addEventListener('load', install);
+})();
+
+// 时间线：记录 SceneManager 的场景切换请求和新场景的第一帧
+(function() {
+    if (!window.AndroidTimeline) return;
+    function sceneName(scene) {
+        var ctor = scene && (scene.constructor || scene);
+        return (ctor && ctor.name) || 'unknown';
+    }
+    function install() {
+        if (typeof SceneManager === 'undefined' || SceneManager._androidTimelineHooked) return;
+        var gotoScene = SceneManager.goto;
+        SceneManager.goto = function(sceneClass) {
+            AndroidTimeline.record('scene.goto', sceneClass ? sceneName(sceneClass) : 'null');
+            return gotoScene.apply(this, arguments);
+        };
+        var onSceneStart = SceneManager.onSceneStart;
+        SceneManager.onSceneStart = function() {
+            AndroidTimeline.record('scene.start', sceneName(this._scene));
+            return onSceneStart.apply(this, arguments);
+        };
+        SceneManager._androidTimelineHooked = true;
+    }
+    window.addEventListener('load', install);
+})();
+
+// 直接输入通道：Java 按帧推送屏幕按钮的状态变化，直接写入 Input._currentState；同时统计触摸到状态生效的延迟
+(function() {
+    if (!window.AndroidInput) return;
+    var direct = AndroidInput.isDirectChannel();
+    // 与 Java 端 System.currentTimeMillis() 同一时基
+    function now() {
+        var origin = performance.timeOrigin || performance.timing.navigationStart;
+        return origin + performance.now();
+    }
+    // 同一帧内按下又松开的键，等下一次 Input.update 之后再松开，避免丢失点击
+    var pressedThisFrame = {};
+    var releases = [];
+    window.AndroidInputChannel = {
+        // events: [[DOM 键码, 按下 1/松开 0, 触摸时刻], ...]
+        apply: function(events) {
+            if (typeof Input === 'undefined' || !Input._currentState) return;
+            var time = now();
+            for (var i = 0; i < events.length; i++) {
+                var name = Input.keyMapper[events[i][0]];
+                if (!name) continue;
+                if (events[i][1]) {
+                    Input._currentState[name] = true;
+                    pressedThisFrame[name] = true;
+                    AndroidInput.recordLatency('direct', time - events[i][2]);
+                } else if (pressedThisFrame[name]) {
+                    releases.push(name);
+                } else {
+                    Input._currentState[name] = false;
+                }
+            }
+        }
+    };
+    function install() {
+        if (typeof Input === 'undefined' || Input._androidInputHooked) return;
+        var update = Input.update;
+        Input.update = function() {
+            update.apply(this, arguments);
+            pressedThisFrame = {};
+            for (var i = 0; i < releases.length; i++) {
+                this._currentState[releases[i]] = false;
+            }
+            releases.length = 0;
+        };
+        if (!direct) {
+            // KeyEvent 通道：按键到达 Input 时计算延迟
+            var onKeyDown = Input._onKeyDown;
+            Input._onKeyDown = function(event) {
+                var touched = AndroidInput.takeTouchTime(event.keyCode);
+                if (touched > 0) {
+                    AndroidInput.recordLatency('keyEvent', now() - touched);
+                }
+                return onKeyDown.apply(this, arguments);
+            };
+        }
+        Input._androidInputHooked = true;
+    }
+    window.addEventListener('load', install);
+})();
+
+// 帧率调节：AndroidGovernor 给出目标帧率，低于 60 时跳过部分 vsync
+// 游戏逻辑由 SceneManager.updateMain 的累加器按实际经过的时间补齐，速度不变
+(function() {
+    if (!window.AndroidGovernor) return;
+    var target = 60;
+    var lastFrame = 0;
+    window.AndroidFrameRate = {
+        setTarget: function(fps) {
+            target = fps;
+        }
+    };
+    function install() {
+        if (typeof SceneManager === 'undefined' || SceneManager._androidFrameRateHooked) return;
+        target = AndroidGovernor.getTarget();
+        var requestUpdate = SceneManager.requestUpdate;
+        SceneManager.requestUpdate = function() {
+            if (target >= 60 || this._stopped) {
+                return requestUpdate.apply(this, arguments);
+            }
+            var self = this;
+            var tick = function(now) {
+                // 留 2ms 余量，避免 vsync 抖动时多跳一帧
+                if (target < 60 && now - lastFrame < 1000 / target - 2) {
+                    requestAnimationFrame(tick);
+                    return;
+                }
+                lastFrame = now;
+                self.update();
+            };
+            requestAnimationFrame(tick);
+        };
+        var onSceneStart = SceneManager.onSceneStart;
+        SceneManager.onSceneStart = function() {
+            AndroidGovernor.setScene(typeof Scene_MenuBase !== 'undefined' && this._scene instanceof Scene_MenuBase);
+            return onSceneStart.apply(this, arguments);
+        };
+        SceneManager._androidFrameRateHooked = true;
+    }
+    window.addEventListener('load', install);
+})();
+
+// 内存紧张时由 MemoryTrimmer 调用：按保留比例收缩 ImageManager 缓存（预约的图片不动），丢弃已播放完的 SE 缓冲区
+(function() {
+    if (!window.AndroidMemory) return;
+    function trimImages(keepPercent) {
+        if (typeof ImageManager === 'undefined' || !ImageManager._imageCache ||
+            !ImageManager._imageCache._truncateCache) return 0;
+        var cache = ImageManager._imageCache;
+        var before = Object.keys(cache._items).length;
+        // _truncateCache 按最近使用保留 ImageCache.limit 像素，临时缩小上限即可
+        var limit = ImageCache.limit;
+        ImageCache.limit = limit * keepPercent / 100;
+        try {
+            cache._truncateCache();
+        } finally {
+            ImageCache.limit = limit;
+        }
+        // 释放长时间未使用的 GPU 纹理
+        if (typeof Graphics !== 'undefined' && Graphics._renderer && Graphics._renderer.textureGC) {
+            Graphics._renderer.textureGC.run();
+        }
+        return before - Object.keys(cache._items).length;
+    }
+    function stillPlaying(list) {
+        var kept = [];
+        for (var i = 0; i < list.length; i++) {
+            if (list[i].isPlaying()) kept.push(list[i]);
+        }
+        return kept;
+    }
+    function trimAudio(purgeFinished, dropStatic) {
+        if (typeof AudioManager === 'undefined') return 0;
+        var released = 0;
+        var kept;
+        if (purgeFinished && AudioManager._seBuffers) {
+            kept = stillPlaying(AudioManager._seBuffers);
+            released += AudioManager._seBuffers.length - kept.length;
+            AudioManager._seBuffers = kept;
+        }
+        // 系统音效的缓冲区在 playStaticSe 时按需重新加载
+        if (dropStatic && AudioManager._staticBuffers) {
+            kept = stillPlaying(AudioManager._staticBuffers);
+            released += AudioManager._staticBuffers.length - kept.length;
+            AudioManager._staticBuffers = kept;
+        }
+        return released;
+    }
+    window.AndroidMemoryTrim = {
+        trim: function(keepPercent, purgeFinishedAudio, dropStaticAudio) {
+            var images = 0;
+            var audio = 0;
+            try {
+                images = trimImages(keepPercent);
+                audio = trimAudio(purgeFinishedAudio, dropStaticAudio);
+            } catch (e) {
+                console.error('AndroidMemoryTrim failed: ' + e);
+            }
+            AndroidMemory.onTrimmed(images, audio);
+        }
+    };
+})();
 
 console.log('Android wrappers loaded successfully');
\ No newline at end of file
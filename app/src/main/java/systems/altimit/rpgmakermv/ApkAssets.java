@@ -0,0 +1,58 @@
+package systems.altimit.rpgmakermv;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// VirtualFileSystem 的资源层：APK 中的 assets
+public class ApkAssets implements VirtualFileSystem.Assets {
+    private final AssetManager assets;
+
+    public ApkAssets(AssetManager assets) {
+        this.assets = assets;
+    }
+
+    // assets 的修改时间取 APK 的更新时间
+    public static long installTime(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public String[] list(String dir) throws IOException {
+        String[] list = assets.list(dir);
+        return list != null ? list : new String[0];
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        return assets.open(path, AssetManager.ACCESS_STREAMING);
+    }
+
+    // 未压缩的资源可以直接取长度，压缩的只能读一遍
+    @Override
+    public long size(String path) {
+        try (AssetFileDescriptor fd = assets.openFd(path)) {
+            return fd.getLength();
+        } catch (IOException e) {
+            // 压缩存储
+        }
+        try (InputStream is = assets.open(path, AssetManager.ACCESS_STREAMING)) {
+            long size = 0;
+            long skipped;
+            while ((skipped = is.skip(64 * 1024)) > 0) {
+                size += skipped;
+            }
+            return size;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
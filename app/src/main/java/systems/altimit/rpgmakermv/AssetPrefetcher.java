@@ -0,0 +1,311 @@
+package systems.altimit.rpgmakermv;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.webkit.JavascriptInterface;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 地图资源预取：根据 data/MapXXX.json 和 data/Tilesets.json 找出地图要用到的
+// 图块、角色、远景、战斗背景和 BGM/BGS，在后台线程读入内存，
+// WebView 请求这些资源时由 shouldInterceptRequest 直接返回
+public class AssetPrefetcher {
+    private static final String ASSET_ROOT = "www/";
+
+    private final AssetManager assets;
+    private final long maxBytes;
+    private final ExecutorService executor;
+    // 每次请求新地图时递增，旧任务发现不一致即停止
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // 已预取的资源（按资源路径，LRU）
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(32, 0.75f, true);
+    private long currentBytes;
+
+    private String imageExt;
+    private String audioExt;
+    // 降采样器替换了原图时，预取的原图不会被用到
+    private volatile ImageDownscaler downscaler;
+
+    // 统计
+    private long requests;
+    private long prefetched;
+    private long prefetchedBytes;
+    private long hits;
+    private long misses;
+    private long evicted;
+    private long cancelled;
+    private long skipped;
+    private long superseded;
+
+    public AssetPrefetcher(Context context, long maxBytes) {
+        this.assets = context.getAssets();
+        this.maxBytes = maxBytes;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AssetPrefetcher");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    // 预取指定地图的资源，会取消仍在进行的上一次预取
+    @JavascriptInterface
+    public void prefetchMap(final int mapId) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        final int gen = generation.incrementAndGet();
+        synchronized (this) {
+            requests++;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (gen != generation.get()) {
+                    return;
+                }
+                Set<String> paths = resolveMapAssets(mapId);
+                for (String path : paths) {
+                    if (gen != generation.get()) {
+                        synchronized (AssetPrefetcher.this) {
+                            cancelled++;
+                        }
+                        return;
+                    }
+                    warm(path);
+                }
+            }
+        });
+    }
+
+    // 取消正在进行的预取
+    @JavascriptInterface
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    // 停止预取线程并释放已预取的数据（onDestroy 时调用）
+    public void close() {
+        generation.incrementAndGet();
+        executor.shutdownNow();
+        clear();
+    }
+
+    // 预取命中统计（JSON）
+    @JavascriptInterface
+    public synchronized String getStats() {
+        long total = hits + misses;
+        return "{\"requests\":" + requests
+                + ",\"prefetched\":" + prefetched
+                + ",\"prefetchedBytes\":" + prefetchedBytes
+                + ",\"hits\":" + hits
+                + ",\"misses\":" + misses
+                + ",\"hitRate\":" + (total > 0 ? (double) hits / total : 0)
+                + ",\"evicted\":" + evicted
+                + ",\"cancelled\":" + cancelled
+                + ",\"skipped\":" + skipped
+                + ",\"superseded\":" + superseded
+                + ",\"bytes\":" + currentBytes + "}";
+    }
+
+    // 取出预取好的资源（取出后从缓存移除，WebView 会自己缓存解码结果）
+    public synchronized byte[] take(String assetPath) {
+        byte[] data = entries.remove(assetPath);
+        if (data != null) {
+            currentBytes -= data.length;
+            hits++;
+        } else if (isPrefetchable(assetPath)) {
+            misses++;
+        }
+        return data;
+    }
+
+    public void setDownscaler(ImageDownscaler downscaler) {
+        this.downscaler = downscaler;
+    }
+
+    // 请求已由降采样器返回缩小后的图片，丢弃预取的原图
+    public synchronized void discard(String assetPath) {
+        byte[] data = entries.remove(assetPath);
+        if (data != null) {
+            currentBytes -= data.length;
+            superseded++;
+        }
+    }
+
+    public synchronized void trimToSize(long bytes) {
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (currentBytes > bytes && it.hasNext()) {
+            currentBytes -= it.next().getValue().length;
+            it.remove();
+            evicted++;
+        }
+    }
+
+    public void clear() {
+        cancel();
+        trimToSize(0);
+    }
+
+    private static boolean isPrefetchable(String assetPath) {
+        return assetPath.startsWith(ASSET_ROOT + "img/") || assetPath.startsWith(ASSET_ROOT + "audio/");
+    }
+
+    private void warm(String assetPath) {
+        ImageDownscaler downscaler = this.downscaler;
+        synchronized (this) {
+            if (entries.containsKey(assetPath)) {
+                return;
+            }
+            // 已知会被降采样的图片（本次运行中缩小过）不再预取原图
+            if (downscaler != null && downscaler.isDownscaled(assetPath)) {
+                skipped++;
+                return;
+            }
+        }
+        byte[] data;
+        try {
+            data = readAsset(assetPath);
+        } catch (IOException e) {
+            return;
+        }
+        // 单个资源不超过预算的四分之一
+        if (data.length > maxBytes / 4) {
+            return;
+        }
+        synchronized (this) {
+            byte[] old = entries.put(assetPath, data);
+            if (old != null) {
+                currentBytes -= old.length;
+            }
+            currentBytes += data.length;
+            prefetched++;
+            prefetchedBytes += data.length;
+            trimToSize(maxBytes);
+        }
+    }
+
+    // 解析地图数据，返回需要预取的资源路径
+    private Set<String> resolveMapAssets(int mapId) {
+        Set<String> paths = new LinkedHashSet<>();
+        JSONObject map = readJsonObject(String.format(Locale.ROOT, "data/Map%03d.json", mapId));
+        if (map == null) {
+            return paths;
+        }
+        detectExtensions();
+
+        // 图块
+        JSONArray tilesets = readJsonArray("data/Tilesets.json");
+        if (tilesets != null) {
+            JSONObject tileset = tilesets.optJSONObject(map.optInt("tilesetId"));
+            if (tileset != null) {
+                JSONArray names = tileset.optJSONArray("tilesetNames");
+                for (int i = 0; names != null && i < names.length(); i++) {
+                    addImage(paths, "img/tilesets/", names.optString(i));
+                }
+            }
+        }
+
+        // 远景与战斗背景
+        addImage(paths, "img/parallaxes/", map.optString("parallaxName"));
+        addImage(paths, "img/battlebacks1/", map.optString("battleback1Name"));
+        addImage(paths, "img/battlebacks2/", map.optString("battleback2Name"));
+
+        // 自动播放的 BGM/BGS
+        if (map.optBoolean("autoplayBgm")) {
+            addAudio(paths, "audio/bgm/", map.optJSONObject("bgm"));
+        }
+        if (map.optBoolean("autoplayBgs")) {
+            addAudio(paths, "audio/bgs/", map.optJSONObject("bgs"));
+        }
+
+        // 事件的行走图
+        JSONArray events = map.optJSONArray("events");
+        for (int i = 0; events != null && i < events.length(); i++) {
+            JSONObject event = events.optJSONObject(i);
+            JSONArray pages = event != null ? event.optJSONArray("pages") : null;
+            for (int j = 0; pages != null && j < pages.length(); j++) {
+                JSONObject page = pages.optJSONObject(j);
+                JSONObject image = page != null ? page.optJSONObject("image") : null;
+                if (image != null) {
+                    addImage(paths, "img/characters/", image.optString("characterName"));
+                }
+            }
+        }
+        return paths;
+    }
+
+    // 根据 System.json 判断资源是否加密（.rpgmvp/.rpgmvo）
+    private void detectExtensions() {
+        if (imageExt != null) {
+            return;
+        }
+        JSONObject system = readJsonObject("data/System.json");
+        boolean encryptedImages = system != null && system.optBoolean("hasEncryptedImages");
+        boolean encryptedAudio = system != null && system.optBoolean("hasEncryptedAudio");
+        imageExt = encryptedImages ? ".rpgmvp" : ".png";
+        audioExt = encryptedAudio ? ".rpgmvo" : ".ogg";
+    }
+
+    private void addImage(Set<String> paths, String folder, String name) {
+        if (name != null && !name.isEmpty()) {
+            paths.add(ASSET_ROOT + folder + name + imageExt);
+        }
+    }
+
+    private void addAudio(Set<String> paths, String folder, JSONObject audio) {
+        String name = audio != null ? audio.optString("name") : null;
+        if (name != null && !name.isEmpty()) {
+            paths.add(ASSET_ROOT + folder + name + audioExt);
+        }
+    }
+
+    private JSONObject readJsonObject(String path) {
+        try {
+            return new JSONObject(new String(readAsset(ASSET_ROOT + path), StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    private JSONArray readJsonArray(String path) {
+        try {
+            return new JSONArray(new String(readAsset(ASSET_ROOT + path), StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    private byte[] readAsset(String assetPath) throws IOException {
+        try (InputStream is = assets.open(assetPath, AssetManager.ACCESS_STREAMING)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(is.available(), 4096));
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
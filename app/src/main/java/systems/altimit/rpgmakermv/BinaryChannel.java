@@ -0,0 +1,122 @@
+package systems.altimit.rpgmakermv;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebMessagePortCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+// AndroidFS 的二进制通道：通过 WebMessagePort 直接传 ArrayBuffer，不再经过字符串转换
+// 每次页面加载完成后新建一对端口，一端交给页面（消息 "AndroidFSPort"），包装脚本用它实现无编码的 readFile/writeFile
+// 协议（整数均为大端）：
+//   JS → Java 读取：字符串 "r<id>\n<path>"
+//   JS → Java 写入：ArrayBuffer [id:int32][路径长度:int32][路径 UTF-8][内容]
+//   Java → JS 读取结果：ArrayBuffer [id:int32][内容]
+//   Java → JS 写入完成：字符串 "w<id>"；失败：字符串 "e<id>\n<错误码>"
+public class BinaryChannel {
+    private static final String TAG = "BinaryChannel";
+    static final String PORT_MESSAGE = "AndroidFSPort";
+
+    private final WebView webView;
+    private final FileSystemInterface fileSystem;
+    private WebMessagePortCompat port;
+
+    public BinaryChannel(WebView webView, FileSystemInterface fileSystem) {
+        this.webView = webView;
+        this.fileSystem = fileSystem;
+    }
+
+    public static boolean isSupported() {
+        return WebViewFeature.isFeatureSupported(WebViewFeature.CREATE_WEB_MESSAGE_CHANNEL)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.POST_WEB_MESSAGE)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_SET_MESSAGE_CALLBACK)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_POST_MESSAGE)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_ARRAY_BUFFER);
+    }
+
+    // 页面加载完成时调用（主线程），旧页面的端口随之作废
+    public void open() {
+        close();
+        WebMessagePortCompat[] ports = WebViewCompat.createWebMessageChannel(webView);
+        port = ports[0];
+        port.setWebMessageCallback(new WebMessagePortCompat.WebMessageCallbackCompat() {
+            @Override
+            public void onMessage(WebMessagePortCompat source, WebMessageCompat message) {
+                onRequest(source, message);
+            }
+        });
+        // file:// 页面没有可匹配的源，只能用通配
+        WebViewCompat.postWebMessage(webView,
+                new WebMessageCompat(PORT_MESSAGE, new WebMessagePortCompat[]{ports[1]}), Uri.parse("*"));
+    }
+
+    public void close() {
+        if (port != null) {
+            port.close();
+            port = null;
+        }
+    }
+
+    // 在 AndroidFS 的异步线程上执行，与同一路径上的其他异步请求保持顺序
+    private void onRequest(final WebMessagePortCompat source, final WebMessageCompat message) {
+        if (message.getType() == WebMessageCompat.TYPE_ARRAY_BUFFER) {
+            final FileSystemCore.BinaryWrite request;
+            try {
+                request = FileSystemCore.parseBinaryWrite(message.getArrayBuffer());
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Bad write request", e);
+                return;
+            }
+            fileSystem.executeFor(request.path, new Runnable() {
+                @Override
+                public void run() {
+                    write(source, request);
+                }
+            });
+            return;
+        }
+        String data = message.getData();
+        int newline = data != null ? data.indexOf('\n') : -1;
+        if (newline < 2 || data.charAt(0) != 'r') {
+            Log.w(TAG, "Unknown request: " + data);
+            return;
+        }
+        final int id = Integer.parseInt(data.substring(1, newline));
+        final String path = data.substring(newline + 1);
+        fileSystem.executeFor(path, new Runnable() {
+            @Override
+            public void run() {
+                read(source, id, path);
+            }
+        });
+    }
+
+    private void read(WebMessagePortCompat source, int id, String path) {
+        byte[] data = fileSystem.readBytes(path);
+        if (data == null) {
+            reply(source, new WebMessageCompat("e" + id + "\n" + (fileSystem.exists(path) ? "EIO" : "ENOENT")));
+            return;
+        }
+        reply(source, new WebMessageCompat(FileSystemCore.binaryReadResponse(id, data)));
+    }
+
+    private void write(WebMessagePortCompat source, FileSystemCore.BinaryWrite request) {
+        boolean ok = fileSystem.writeBytes(request.path, request.data);
+        reply(source, new WebMessageCompat(ok ? "w" + request.id : "e" + request.id + "\nEIO"));
+    }
+
+    // 回到主线程发送；端口已被新页面替换时丢弃
+    private void reply(final WebMessagePortCompat source, final WebMessageCompat message) {
+        webView.post(new Runnable() {
+            @Override
+            public void run() {
+                if (source == port) {
+                    source.postMessage(message);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,193 @@
+package systems.altimit.rpgmakermv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+// JavascriptInterface 调用的耗时统计：每个方法一个对数直方图（p50/p95/p99）、调用次数和参数/返回值大小
+// 所有计数器预先分配，记录时不产生对象；嵌套调用（如 batchSync 内部的 readFileSync）不重复计入
+public class BridgeProfiler {
+    // 每个 2 的幂区间再分 4 个子桶（误差不超过 25%）
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    // 单个方法的统计
+    public static final class Method {
+        final String name;
+        private final long[] buckets = new long[BUCKETS];
+        private long calls;
+        private long totalNanos;
+        private long maxNanos;
+        // 参数和返回值的字符数（跨桥传输的字符串按 UTF-16 传递）
+        private long inChars;
+        private long outChars;
+
+        Method(String name) {
+            this.name = name;
+        }
+
+        synchronized void record(long nanos, long in, long out) {
+            calls++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+            inChars += in;
+            outChars += out;
+            buckets[bucketOf(nanos)]++;
+        }
+
+        // 第 p 分位（0~1）所在桶的上界，单位纳秒
+        synchronized long percentile(double p) {
+            if (calls == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(calls * p);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.min(upperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        synchronized long getCalls() {
+            return calls;
+        }
+
+        synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        synchronized void reset() {
+            calls = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            inChars = 0;
+            outChars = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = 0;
+            }
+        }
+
+        synchronized void appendJson(StringBuilder sb) {
+            sb.append('"').append(name).append("\":{\"calls\":").append(calls)
+                    .append(",\"totalMs\":").append(format(totalNanos / 1e6))
+                    .append(",\"meanUs\":").append(format(calls > 0 ? totalNanos / 1e3 / calls : 0))
+                    .append(",\"p50Us\":").append(format(percentile(0.50) / 1e3))
+                    .append(",\"p95Us\":").append(format(percentile(0.95) / 1e3))
+                    .append(",\"p99Us\":").append(format(percentile(0.99) / 1e3))
+                    .append(",\"maxUs\":").append(format(maxNanos / 1e3))
+                    .append(",\"inChars\":").append(inChars)
+                    .append(",\"outChars\":").append(outChars).append('}');
+        }
+
+        synchronized String summary() {
+            return String.format(Locale.ROOT, "%-20s calls=%d total=%.1fms p50=%.0fus p95=%.0fus p99=%.0fus max=%.0fus in=%d out=%d",
+                    name, calls, totalNanos / 1e6, percentile(0.50) / 1e3, percentile(0.95) / 1e3,
+                    percentile(0.99) / 1e3, maxNanos / 1e3, inChars, outChars);
+        }
+    }
+
+    private final List<Method> methods = new ArrayList<>();
+    // 当前线程的调用深度，只统计最外层的桥调用
+    private final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    // 注册方法（初始化时调用）
+    public synchronized Method register(String name) {
+        Method method = new Method(name);
+        methods.add(method);
+        return method;
+    }
+
+    public long begin() {
+        depth.get()[0]++;
+        return System.nanoTime();
+    }
+
+    // 返回本次耗时（纳秒）；嵌套调用不计入，返回 -1
+    public long end(Method method, long start, long in, long out) {
+        long nanos = System.nanoTime() - start;
+        int[] d = depth.get();
+        if (--d[0] == 0) {
+            method.record(nanos, in, out);
+            return nanos;
+        }
+        return -1;
+    }
+
+    public synchronized void reset() {
+        for (Method method : methods) {
+            method.reset();
+        }
+    }
+
+    // {"方法名":{calls, totalMs, meanUs, p50Us, p95Us, p99Us, maxUs, inChars, outChars}, ...}（只含调用过的方法）
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Method method : methods) {
+            if (method.getCalls() == 0) {
+                continue;
+            }
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            method.appendJson(sb);
+        }
+        return sb.append('}').toString();
+    }
+
+    // 按总耗时排序的文本摘要，每行一个方法
+    public synchronized List<String> summary() {
+        List<Method> active = new ArrayList<>();
+        for (Method method : methods) {
+            if (method.getCalls() > 0) {
+                active.add(method);
+            }
+        }
+        Collections.sort(active, new Comparator<Method>() {
+            @Override
+            public int compare(Method a, Method b) {
+                return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+            }
+        });
+        List<String> lines = new ArrayList<>();
+        for (Method method : active) {
+            lines.add(method.summary());
+        }
+        return lines;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long step = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * step - 1;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,221 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// AndroidFS 桥调用的二进制跟踪文件，由 ProfilingFileSystemInterface 录制、TraceReplay 在 JVM 上回放
+// 格式：魔数 "AFST"、版本号，之后是一串记录，每条记录以 varint 标记开头：
+//   TAG_STRING：定义字符串（varint 长度 + UTF-8），按出现顺序编号，方法名和路径只写一次
+//   TAG_CALL：方法名、时间差、耗时（纳秒）、path、path2（字符串编号 + 1，0 表示 null）、
+//             arg、arg2（fd、位置等，zigzag）、数据大小（字符数）、结果（zigzag）
+// 纯 Java 实现
+public final class BridgeTrace {
+    static final int MAGIC = 0x41465354;
+    static final int VERSION = 1;
+
+    private static final int TAG_STRING = 0;
+    private static final int TAG_CALL = 1;
+    // 字符串表上限，超出后不再复用（每次重新定义）
+    private static final int MAX_STRINGS = 1 << 16;
+
+    private BridgeTrace() {
+    }
+
+    // 一次桥调用
+    public static final class Call {
+        public String op;
+        // 相对录制开始的纳秒数
+        public long time;
+        public long duration;
+        public String path;
+        public String path2;
+        public long arg;
+        public long arg2;
+        public long size;
+        public long result;
+    }
+
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> strings = new HashMap<>();
+        private final long origin;
+        private long lastTime;
+        private int nextString;
+        private long calls;
+        private boolean failed;
+
+        public Writer(OutputStream os, long originNanos) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024));
+            this.origin = originNanos;
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        // time 为 System.nanoTime()；写入失败后停止录制
+        public synchronized void record(String op, long time, long duration, String path, String path2,
+                                        long arg, long arg2, long size, long result) {
+            if (failed) {
+                return;
+            }
+            try {
+                int opRef = ref(op);
+                int pathRef = ref(path);
+                int path2Ref = ref(path2);
+                long relative = time - origin;
+                writeVarLong(TAG_CALL);
+                writeVarLong(opRef);
+                writeVarLong(zigzag(relative - lastTime));
+                writeVarLong(Math.max(duration, 0));
+                writeVarLong(pathRef);
+                writeVarLong(path2Ref);
+                writeVarLong(zigzag(arg));
+                writeVarLong(zigzag(arg2));
+                writeVarLong(Math.max(size, 0));
+                writeVarLong(zigzag(result));
+                lastTime = relative;
+                calls++;
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed = true;
+            }
+        }
+
+        public synchronized long getCalls() {
+            return calls;
+        }
+
+        public synchronized void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+        // 字符串编号 + 1（0 表示 null），第一次出现时先写定义
+        private int ref(String s) throws IOException {
+            if (s == null) {
+                return 0;
+            }
+            Integer id = strings.get(s);
+            if (id == null) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(TAG_STRING);
+                writeVarLong(bytes.length);
+                out.write(bytes);
+                id = nextString++;
+                if (strings.size() < MAX_STRINGS) {
+                    strings.put(s, id);
+                }
+            }
+            return id + 1;
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private long lastTime;
+
+        public Reader(InputStream is) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(is, 64 * 1024));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an AndroidFS trace");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trace version " + version);
+            }
+        }
+
+        // 读取下一次调用，文件结束时返回 null（录制中断导致的残缺记录也视为结束）
+        public Call next() throws IOException {
+            try {
+                while (true) {
+                    int tag = (int) readVarLong();
+                    if (tag == TAG_STRING) {
+                        byte[] bytes = new byte[(int) readVarLong()];
+                        in.readFully(bytes);
+                        strings.add(new String(bytes, StandardCharsets.UTF_8));
+                    } else if (tag == TAG_CALL) {
+                        Call call = new Call();
+                        call.op = string(readVarLong());
+                        lastTime += unzigzag(readVarLong());
+                        call.time = lastTime;
+                        call.duration = readVarLong();
+                        call.path = string(readVarLong());
+                        call.path2 = string(readVarLong());
+                        call.arg = unzigzag(readVarLong());
+                        call.arg2 = unzigzag(readVarLong());
+                        call.size = readVarLong();
+                        call.result = unzigzag(readVarLong());
+                        return call;
+                    } else {
+                        throw new IOException("Corrupt trace (tag " + tag + ")");
+                    }
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private String string(long ref) throws IOException {
+            if (ref == 0) {
+                return null;
+            }
+            if (ref > strings.size()) {
+                throw new IOException("Corrupt trace (string " + ref + ")");
+            }
+            return strings.get((int) ref - 1);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt trace (varint)");
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
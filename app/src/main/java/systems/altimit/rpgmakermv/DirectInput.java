@@ -0,0 +1,138 @@
+package systems.altimit.rpgmakermv;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.KeyEvent;
+import android.webkit.JavascriptInterface;
+
+// 屏幕按钮的直接输入通道：按钮状态变化按帧合并，通过一次 evaluateJavascript 写入 Input._currentState，
+// 不再构造 KeyEvent 经过 WebView 的按键分发
+// 同时统计触摸到游戏状态生效的延迟（直接通道和 KeyEvent 通道分别统计，便于对比）
+// 注册为 AndroidInput
+public class DirectInput {
+    private static final String TAG = "InputLatency";
+
+    private final Player player;
+    private final boolean direct;
+
+    // 本帧待发送的状态变化：[DOM 键码, 按下 1/松开 0, 触摸时刻（墙上时钟毫秒）]，只在主线程访问
+    private final StringBuilder batch = new StringBuilder();
+    private boolean scheduled;
+    private final Runnable deliver = new Runnable() {
+        @Override
+        public void run() {
+            scheduled = false;
+            if (batch.length() == 0) {
+                return;
+            }
+            String script = "if (window.AndroidInputChannel) AndroidInputChannel.apply([" + batch + "]);";
+            batch.setLength(0);
+            player.evaluateJavascript(script);
+        }
+    };
+
+    // 触摸到状态生效的延迟
+    private final BridgeProfiler latency = new BridgeProfiler();
+    private final BridgeProfiler.Method directLatency = latency.register("direct");
+    private final BridgeProfiler.Method keyEventLatency = latency.register("keyEvent");
+    // KeyEvent 通道：按 DOM 键码记录最近一次触摸的时刻，由 Input._onKeyDown 取走
+    private final long[] touchTimes = new long[256];
+
+    public DirectInput(Player player, boolean direct) {
+        this.player = player;
+        this.direct = direct;
+    }
+
+    // 屏幕按钮按下/松开；eventTime 为 MotionEvent.getEventTime()（uptimeMillis 时基）
+    public void send(int keyCode, boolean down, long eventTime) {
+        int domKeyCode = toDomKeyCode(keyCode);
+        if (domKeyCode == 0) {
+            return;
+        }
+        if (batch.length() > 0) {
+            batch.append(',');
+        }
+        batch.append('[').append(domKeyCode).append(',').append(down ? 1 : 0)
+                .append(',').append(toWallTime(eventTime)).append(']');
+        if (!scheduled) {
+            scheduled = true;
+            player.getView().postOnAnimation(deliver);
+        }
+    }
+
+    // KeyEvent 通道发送前记录触摸时刻，用于统计旧路径的延迟
+    public void markKeyEvent(int keyCode, long eventTime) {
+        int domKeyCode = toDomKeyCode(keyCode);
+        if (domKeyCode != 0) {
+            synchronized (touchTimes) {
+                touchTimes[domKeyCode] = toWallTime(eventTime);
+            }
+        }
+    }
+
+    public void logStats() {
+        for (String line : latency.summary()) {
+            Log.i(TAG, line);
+        }
+    }
+
+    @JavascriptInterface
+    public boolean isDirectChannel() {
+        return direct;
+    }
+
+    // 取走该键最近一次触摸的时刻（墙上时钟毫秒），没有时返回 0（例如实体键盘）
+    @JavascriptInterface
+    public double takeTouchTime(int domKeyCode) {
+        if (domKeyCode <= 0 || domKeyCode >= touchTimes.length) {
+            return 0;
+        }
+        synchronized (touchTimes) {
+            long time = touchTimes[domKeyCode];
+            touchTimes[domKeyCode] = 0;
+            return time;
+        }
+    }
+
+    // channel 为 direct 或 keyEvent
+    @JavascriptInterface
+    public void recordLatency(String channel, double millis) {
+        if (millis < 0) {
+            return;
+        }
+        BridgeProfiler.Method method = "direct".equals(channel) ? directLatency : keyEventLatency;
+        method.record((long) (millis * 1e6), 0, 0);
+    }
+
+    // {"direct":{calls, meanUs, p50Us, ...}, "keyEvent":{...}}
+    @JavascriptInterface
+    public String getLatencyStats() {
+        return latency.toJson();
+    }
+
+    // uptimeMillis 时基的事件时间换算成墙上时钟，JS 端用 performance.timeOrigin + performance.now() 对比
+    private static long toWallTime(long eventTime) {
+        return System.currentTimeMillis() - (SystemClock.uptimeMillis() - eventTime);
+    }
+
+    // Input.keyMapper 使用的 DOM 键码
+    static int toDomKeyCode(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_UP: return 38;
+            case KeyEvent.KEYCODE_DPAD_DOWN: return 40;
+            case KeyEvent.KEYCODE_DPAD_LEFT: return 37;
+            case KeyEvent.KEYCODE_DPAD_RIGHT: return 39;
+            case KeyEvent.KEYCODE_SPACE: return 32;
+            case KeyEvent.KEYCODE_ENTER: return 13;
+            case KeyEvent.KEYCODE_TAB: return 9;
+            case KeyEvent.KEYCODE_ESCAPE: return 27;
+            case KeyEvent.KEYCODE_SHIFT_LEFT:
+            case KeyEvent.KEYCODE_SHIFT_RIGHT: return 16;
+            case KeyEvent.KEYCODE_CTRL_LEFT:
+            case KeyEvent.KEYCODE_CTRL_RIGHT: return 17;
+            case KeyEvent.KEYCODE_PAGE_UP: return 33;
+            case KeyEvent.KEYCODE_PAGE_DOWN: return 34;
+            default: return 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package systems.altimit.rpgmakermv;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 按字节预算淘汰的 LRU 文件内容缓存（只缓存 UTF-8 解码后的字符串）
+// 命中时用文件的 size/mtime 校验，纯 Java 实现，不依赖 Android
+public class FileContentCache {
+
+    private static final class Entry {
+        final long size;
+        final long mtime;
+        final String text;
+        final long cost;
+
+        Entry(long size, long mtime, String text) {
+            this.size = size;
+            this.mtime = mtime;
+            this.text = text;
+            // Java 字符串按 UTF-16 存储
+            this.cost = (long) text.length() * 2;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public FileContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // 获取缓存内容；size/mtime 与缓存时不一致则视为失效
+    public synchronized String get(String key, long size, long mtime) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.size != size || entry.mtime != mtime) {
+            removeEntry(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.text;
+    }
+
+    public synchronized void put(String key, long size, long mtime, String text) {
+        Entry entry = new Entry(size, mtime, text);
+        // 单个文件超过预算的四分之一时不缓存，避免冲掉所有热点文件
+        if (entry.cost > maxBytes / 4) {
+            removeEntry(key);
+            return;
+        }
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            currentBytes -= old.cost;
+        }
+        currentBytes += entry.cost;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized void remove(String key) {
+        removeEntry(key);
+    }
+
+    // 淘汰最久未使用的条目，直到占用不超过 bytes
+    public synchronized void trimToSize(long bytes) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > bytes && it.hasNext()) {
+            currentBytes -= it.next().getValue().cost;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    // 命中统计（JSON）
+    public synchronized String getStats() {
+        return "{\"hits\":" + hits
+                + ",\"misses\":" + misses
+                + ",\"evictions\":" + evictions
+                + ",\"entries\":" + entries.size()
+                + ",\"bytes\":" + currentBytes
+                + ",\"maxBytes\":" + maxBytes + "}";
+    }
+
+    private void removeEntry(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            currentBytes -= old.cost;
+        }
+    }
+}
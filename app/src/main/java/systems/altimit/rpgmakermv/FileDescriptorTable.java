@@ -0,0 +1,199 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 文件描述符表：openSync/readSync/writeSync/closeSync 的后端
+// 基于 FileChannel 的定位读写；只读打开的大文件使用 MappedByteBuffer
+public class FileDescriptorTable {
+    // 只读文件超过该大小时使用内存映射
+    private static final long MAP_THRESHOLD = 4 * 1024 * 1024;
+    // 单次映射的上限（MappedByteBuffer 以 int 为索引）
+    private static final long MAP_LIMIT = Integer.MAX_VALUE;
+    // 同时打开的文件数上限
+    private static final int MAX_OPEN_FILES = 256;
+
+    // 已打开的文件
+    public static final class OpenFile {
+        public final File file;
+        public final boolean readOnly;
+        final RandomAccessFile raf;
+        final FileChannel channel;
+        final boolean append;
+        MappedByteBuffer mapped;
+
+        OpenFile(File file, RandomAccessFile raf, boolean readOnly, boolean append) {
+            this.file = file;
+            this.raf = raf;
+            this.channel = raf.getChannel();
+            this.readOnly = readOnly;
+            this.append = append;
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, OpenFile> files = new ConcurrentHashMap<>();
+    // 从 3 开始，与 stdin/stdout/stderr 区分
+    private final AtomicInteger nextFd = new AtomicInteger(3);
+
+    // 按 Node.js 的 flags 打开文件，返回 fd；文件不存在（只读打开）时返回 -1
+    public int open(File file, String flags) throws IOException {
+        if (files.size() >= MAX_OPEN_FILES) {
+            throw new IOException("Too many open files");
+        }
+        if (flags == null || flags.isEmpty()) {
+            flags = "r";
+        }
+        boolean readOnly = flags.equals("r") || flags.equals("rs");
+        boolean truncate = flags.startsWith("w");
+        boolean append = flags.startsWith("a");
+        boolean exclusive = flags.indexOf('x') >= 0;
+
+        if (!file.exists() && (readOnly || flags.startsWith("r"))) {
+            return -1;
+        }
+        if (exclusive && file.exists()) {
+            throw new IOException("File exists: " + file);
+        }
+        if (!readOnly) {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+        if (truncate) {
+            raf.setLength(0);
+        }
+        OpenFile openFile = new OpenFile(file, raf, readOnly, append);
+        if (readOnly) {
+            openFile.mapped = map(openFile, openFile.channel.size());
+        }
+        int fd = nextFd.getAndIncrement();
+        files.put(fd, openFile);
+        return fd;
+    }
+
+    public OpenFile get(int fd) {
+        return files.get(fd);
+    }
+
+    // 读取最多 length 字节；position < 0 时从当前位置读取并前移
+    public byte[] read(int fd, int length, long position) throws IOException {
+        OpenFile openFile = requireOpen(fd);
+        if (length <= 0) {
+            return new byte[0];
+        }
+        synchronized (openFile) {
+            long start = position >= 0 ? position : openFile.channel.position();
+            long size = openFile.channel.size();
+            int count = (int) Math.max(0, Math.min(length, size - start));
+            byte[] data = new byte[count];
+            if (count == 0) {
+                return data;
+            }
+            // 打开后文件被其他写入者改变了大小：按新大小重新映射
+            // （映射之外的数据读不到，文件变短后访问原映射的尾部会触发 SIGBUS）
+            if (openFile.mapped != null && openFile.mapped.capacity() != size) {
+                openFile.mapped = map(openFile, size);
+            }
+            if (openFile.mapped != null) {
+                ByteBuffer view = openFile.mapped.duplicate();
+                view.position((int) start);
+                view.get(data, 0, count);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                long offset = start;
+                while (buffer.hasRemaining()) {
+                    int read = openFile.channel.read(buffer, offset);
+                    if (read < 0) {
+                        break;
+                    }
+                    offset += read;
+                }
+                if (buffer.hasRemaining()) {
+                    byte[] shorter = new byte[buffer.position()];
+                    System.arraycopy(data, 0, shorter, 0, shorter.length);
+                    data = shorter;
+                }
+            }
+            if (position < 0) {
+                openFile.channel.position(start + data.length);
+            }
+            return data;
+        }
+    }
+
+    // 写入数据；position < 0 时写到当前位置（追加模式下总是写到末尾）
+    public int write(int fd, byte[] data, long position) throws IOException {
+        OpenFile openFile = requireOpen(fd);
+        if (openFile.readOnly) {
+            throw new IOException("File not open for writing");
+        }
+        synchronized (openFile) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (openFile.append) {
+                position = openFile.channel.size();
+                openFile.channel.position(position);
+            }
+            if (position >= 0 && !openFile.append) {
+                long offset = position;
+                while (buffer.hasRemaining()) {
+                    offset += openFile.channel.write(buffer, offset);
+                }
+            } else {
+                while (buffer.hasRemaining()) {
+                    openFile.channel.write(buffer);
+                }
+            }
+            return data.length;
+        }
+    }
+
+    public long size(int fd) throws IOException {
+        return requireOpen(fd).channel.size();
+    }
+
+    // 关闭 fd，返回被关闭的文件（用于缓存失效）
+    public OpenFile close(int fd) throws IOException {
+        OpenFile openFile = files.remove(fd);
+        if (openFile == null) {
+            return null;
+        }
+        openFile.mapped = null;
+        openFile.raf.close();
+        return openFile;
+    }
+
+    public void closeAll() {
+        for (Integer fd : files.keySet()) {
+            try {
+                close(fd);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // 只读文件在映射阈值内时映射整个文件，否则返回 null（走定位读取）
+    private static MappedByteBuffer map(OpenFile openFile, long size) throws IOException {
+        if (size < MAP_THRESHOLD || size > MAP_LIMIT) {
+            return null;
+        }
+        return openFile.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    private OpenFile requireOpen(int fd) throws IOException {
+        OpenFile openFile = files.get(fd);
+        if (openFile == null) {
+            throw new IOException("Bad file descriptor: " + fd);
+        }
+        return openFile;
+    }
+}
@@ -0,0 +1,207 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 文件元数据缓存（exists/stat/readdir），以规范路径为键
+// 自己的写操作通过 invalidate 更新，外部修改通过每个目录上的监听失效（Android 上为 FileObserverWatcher）
+// 不依赖 Android，可以在 JVM 上运行（tools/trace-replay）
+public class FileMetadataCache {
+    // 最多监听的目录数，超出后不再缓存新目录下的条目
+    private static final int MAX_WATCHED_DIRS = 64;
+    // 条目数上限，超出后整体清空
+    private static final int MAX_ENTRIES = 4096;
+
+    // 目录监听（不递归）
+    public interface Watcher {
+        // 开始监听 dirPath，之后通过 onChanged/onDirectoryGone 通知；无法监听时返回 null，该目录下的条目不缓存
+        Watch watch(String dirPath, FileMetadataCache cache);
+    }
+
+    public interface Watch {
+        void stop();
+    }
+
+    // 没有其他写入者时使用（例如 JVM 上回放跟踪）：条目只由自己的写操作失效
+    public static final Watcher NO_EXTERNAL_WRITERS = new Watcher() {
+        @Override
+        public Watch watch(String dirPath, FileMetadataCache cache) {
+            return new Watch() {
+                @Override
+                public void stop() {
+                }
+            };
+        }
+    };
+
+    // 不缓存任何条目（用于对比）
+    public static final Watcher DISABLED = new Watcher() {
+        @Override
+        public Watch watch(String dirPath, FileMetadataCache cache) {
+            return null;
+        }
+    };
+
+    // 单个路径的元数据
+    public static final class Entry {
+        public final boolean exists;
+        public final boolean isFile;
+        public final boolean isDirectory;
+        public final long size;
+        public final long mtime;
+        // 延迟生成的 statSync / readdirSync 结果
+        volatile String statJson;
+        volatile String listJson;
+
+        Entry(File file) {
+            this.exists = file.exists();
+            this.isFile = exists && file.isFile();
+            this.isDirectory = exists && file.isDirectory();
+            this.size = exists ? file.length() : 0;
+            this.mtime = exists ? file.lastModified() : 0;
+        }
+    }
+
+    private final String rootPath;
+    private final Watcher watcher;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Watch> watches = new ConcurrentHashMap<>();
+
+    // 每次失效都会递增，用于丢弃与失效并发的写入
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public FileMetadataCache(String rootPath, Watcher watcher) {
+        this.rootPath = rootPath;
+        this.watcher = watcher;
+    }
+
+    // 获取元数据；file 必须是规范路径
+    public Entry get(File file) {
+        String key = file.getPath();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+
+        // 先监听父目录再读取，避免漏掉读取期间的外部修改
+        long gen = generation.get();
+        boolean watched = watch(file.getParentFile());
+        entry = new Entry(file);
+        if (watched && gen == generation.get()) {
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.clear();
+            }
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    // 缓存目录列表（需要同时监听目录本身）
+    public void putList(File dir, Entry entry, String listJson) {
+        long gen = generation.get();
+        if (watch(dir) && gen == generation.get()) {
+            entry.listJson = listJson;
+        }
+    }
+
+    // 缓存 statSync 的 JSON
+    public void putStat(Entry entry, String statJson) {
+        entry.statJson = statJson;
+    }
+
+    // 使路径及其所有上级目录的条目失效（自己的写入、删除、建目录后调用）
+    public void invalidate(File file) {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        String path = file.getPath();
+        while (path != null && path.startsWith(rootPath)) {
+            entries.remove(path);
+            int slash = path.lastIndexOf('/');
+            path = slash > 0 ? path.substring(0, slash) : null;
+        }
+    }
+
+    // 使某个目录下的所有条目失效
+    private void invalidateTree(String dirPath) {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        String prefix = dirPath + "/";
+        Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (key.equals(dirPath) || key.startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    // 停止所有目录监听（FileObserver 持有 inotify 句柄和监听线程上的注册）
+    public void close() {
+        for (Watch watch : watches.values()) {
+            watch.stop();
+        }
+        watches.clear();
+        clear();
+    }
+
+    // 被监听的目录中 name 发生了变化（name 为 null 时是目录本身）；
+    // removed 表示被删除或移走，可能是目录，连同子条目一起失效
+    public void onChanged(String dirPath, String name, boolean removed) {
+        if (name == null) {
+            invalidate(new File(dirPath));
+        } else if (removed) {
+            invalidateTree(dirPath + "/" + name);
+            invalidate(new File(dirPath));
+        } else {
+            invalidate(new File(dirPath, name));
+        }
+    }
+
+    // 被监听的目录本身被删除或移走，监听已经失效
+    public void onDirectoryGone(String dirPath, Watch watch) {
+        watches.remove(dirPath, watch);
+        invalidateTree(dirPath);
+    }
+
+    // 命中统计（JSON）
+    public String getStats() {
+        return "{\"hits\":" + hits.get()
+                + ",\"misses\":" + misses.get()
+                + ",\"invalidations\":" + invalidations.get()
+                + ",\"entries\":" + entries.size()
+                + ",\"watchedDirs\":" + watches.size() + "}";
+    }
+
+    private boolean watch(File dir) {
+        if (dir == null) {
+            return false;
+        }
+        String path = dir.getPath();
+        if (watches.containsKey(path)) {
+            return true;
+        }
+        if (!path.startsWith(rootPath) || !dir.isDirectory() || watches.size() >= MAX_WATCHED_DIRS) {
+            return false;
+        }
+        Watch watch = watcher.watch(path, this);
+        if (watch == null) {
+            return false;
+        }
+        if (watches.putIfAbsent(path, watch) != null) {
+            watch.stop();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package systems.altimit.rpgmakermv;
+
+import android.os.FileObserver;
+
+// FileMetadataCache 在 Android 上的目录监听：每个目录一个 FileObserver（不递归）
+public class FileObserverWatcher implements FileMetadataCache.Watcher {
+    private static final int WATCH_MASK = FileObserver.CREATE | FileObserver.DELETE
+            | FileObserver.MODIFY | FileObserver.CLOSE_WRITE | FileObserver.ATTRIB
+            | FileObserver.MOVED_FROM | FileObserver.MOVED_TO
+            | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    @Override
+    public FileMetadataCache.Watch watch(String dirPath, FileMetadataCache cache) {
+        DirObserver observer = new DirObserver(dirPath, cache);
+        observer.startWatching();
+        return observer;
+    }
+
+    private static final class DirObserver extends FileObserver implements FileMetadataCache.Watch {
+        private final String dirPath;
+        private final FileMetadataCache cache;
+
+        @SuppressWarnings("deprecation")
+        DirObserver(String dirPath, FileMetadataCache cache) {
+            super(dirPath, WATCH_MASK);
+            this.dirPath = dirPath;
+            this.cache = cache;
+        }
+
+        @Override
+        public void onEvent(int event, String name) {
+            event &= FileObserver.ALL_EVENTS;
+            if ((event & (FileObserver.DELETE_SELF | FileObserver.MOVE_SELF)) != 0) {
+                stopWatching();
+                cache.onDirectoryGone(dirPath, this);
+                return;
+            }
+            cache.onChanged(dirPath, name, (event & (FileObserver.DELETE | FileObserver.MOVED_FROM)) != 0);
+        }
+
+        @Override
+        public void stop() {
+            stopWatching();
+        }
+    }
+}
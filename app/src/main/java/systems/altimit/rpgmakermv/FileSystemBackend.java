@@ -0,0 +1,679 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// AndroidFS 同步操作的实现：元数据缓存、内容缓存、延迟写入队列、文件描述符表和分层虚拟文件系统
+// FileSystemInterface 把桥上的调用转到这里；不依赖 Android（目录监听和 APK 资源通过接口传入），
+// tools/trace-replay 在 JVM 上用同一份实现回放跟踪
+public class FileSystemBackend {
+    // 批量调用中单个文件读取的大小上限，超过后由 JS 改走 readFileSync
+    private static final long BATCH_READ_LIMIT = 256 * 1024;
+
+    // 延迟写入重试后仍然失败
+    public interface Listener {
+        void onWriteFailed(File file, IOException error);
+    }
+
+    private final File baseDir;
+    private final String baseDirPath;
+    // 存档（*.rpgsave）是否走延迟写入队列
+    private final boolean writeBehindSaves;
+
+    // exists/stat/readdir 元数据缓存
+    private final FileMetadataCache metadataCache;
+    // 热点文件内容缓存（data/*.json、config.rpgsave、global.rpgsave 等）
+    private final FileContentCache contentCache;
+    // openSync/readSync/writeSync 的文件描述符表
+    private final FileDescriptorTable descriptors = new FileDescriptorTable();
+    // 存档（*.rpgsave）的延迟写入队列
+    private final WriteBehindQueue writeQueue;
+    // require() 的模块解析，按虚拟文件系统的各层查找
+    private final ModuleResolver moduleResolver;
+    // 应用目录、补丁目录和 APK 中 www/ 的分层视图
+    private final VirtualFileSystem vfs;
+    // close() 之后写入线程已停止
+    private volatile boolean closed;
+
+    // baseDir 必须是规范路径
+    public FileSystemBackend(File baseDir, VirtualFileSystem vfs, FileMetadataCache.Watcher watcher,
+                             long contentCacheBytes, boolean writeBehindSaves, final Listener listener) {
+        this.baseDir = baseDir;
+        this.baseDirPath = baseDir.getPath();
+        this.vfs = vfs;
+        this.writeBehindSaves = writeBehindSaves;
+        this.metadataCache = new FileMetadataCache(baseDirPath, watcher);
+        this.contentCache = new FileContentCache(contentCacheBytes);
+        this.writeQueue = new WriteBehindQueue(new WriteBehindQueue.Listener() {
+            @Override
+            public void onWritten(File file, String data) {
+                metadataCache.invalidate(file);
+                contentCache.put(file.getPath(), file.length(), file.lastModified(), data);
+            }
+
+            @Override
+            public void onFailed(File file, String data, IOException error) {
+                listener.onWriteFailed(file, error);
+            }
+        });
+        this.moduleResolver = new ModuleResolver(new ModuleResolver.Source() {
+            @Override
+            public boolean isFile(String id) {
+                return isVirtualFile(getSafeFile(id));
+            }
+
+            @Override
+            public String read(String id) {
+                return readFileSync(id, "utf-8");
+            }
+        });
+    }
+
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    // 将用户路径转换为安全路径（限制在应用目录内），返回规范路径，作为元数据缓存的键
+    File getSafeFile(String path) {
+        return vfs.resolve(path);
+    }
+
+    // 任意一层中是文件（应用目录中的同名条目优先）
+    private boolean isVirtualFile(File file) {
+        FileMetadataCache.Entry entry = metadataCache.get(file);
+        if (entry.exists) {
+            return entry.isFile;
+        }
+        VirtualFileSystem.Node node = vfs.lookup(file);
+        return node != null && !node.isDirectory;
+    }
+
+    // 修改只存在于补丁或 APK 中的文件之前，先复制到应用目录
+    private void copyUp(File file) {
+        try {
+            if (vfs.copyUp(file)) {
+                metadataCache.invalidate(file);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 应用目录中没有时，从补丁目录或 APK 中读取
+    private String readLower(File file) throws IOException {
+        VirtualFileSystem.Node node = vfs.lookup(file);
+        if (node == null || node.isDirectory) {
+            return null;
+        }
+        String key = node.file != null ? node.file.getPath() : node.assetPath;
+        String cached = contentCache.get(key, node.size, node.mtime);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] data = vfs.read(node);
+        if (data == null) {
+            return null;
+        }
+        String text = new String(data, StandardCharsets.UTF_8);
+        contentCache.put(key, node.size, node.mtime, text);
+        return text;
+    }
+
+    VirtualFileSystem getVirtualFileSystem() {
+        return vfs;
+    }
+
+    // 等待该路径上未落盘的延迟写入完成后再返回文件
+    // 只用于必须读写磁盘上文件内容的操作（append/truncate/open），其余操作直接合并队列中的数据
+    private File getSettledFile(String path) {
+        File file = getSafeFile(path);
+        writeQueue.await(file.getPath());
+        return file;
+    }
+
+    // 读取文件；encoding 为 latin1/binary 时返回二进制字符串（每个字符对应一个字节），JS 端转成 Buffer
+    public String readFileSync(String path, String encoding) {
+        String name = encoding.toLowerCase();
+        if (!name.equals("utf-8") && !name.equals("utf8")) {
+            byte[] data = readBytes(path);
+            if (data == null) {
+                return null;
+            }
+            return FileSystemCore.decode(data, name);
+        }
+        try {
+            File file = getSafeFile(path);
+            // 先读尚未落盘的存档
+            String pending = writeQueue.peek(file.getPath());
+            if (pending != null) {
+                return pending;
+            }
+
+            FileMetadataCache.Entry entry = metadataCache.get(file);
+            if (!entry.exists) {
+                return readLower(file);
+            }
+
+            String cached = contentCache.get(file.getPath(), entry.size, entry.mtime);
+            if (cached != null) {
+                return cached;
+            }
+
+            byte[] data = FileSystemCore.readFully(file);
+            if (data == null) {
+                return null;
+            }
+
+            String text = new String(data, StandardCharsets.UTF_8);
+            contentCache.put(file.getPath(), entry.size, entry.mtime, text);
+            return text;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // 读取原始字节（二进制读取和 BinaryChannel 共用），不经过文本缓存
+    byte[] readBytes(String path) {
+        try {
+            File file = getSafeFile(path);
+            String pending = writeQueue.peek(file.getPath());
+            if (pending != null) {
+                return pending.getBytes(StandardCharsets.UTF_8);
+            }
+            if (!metadataCache.get(file).exists) {
+                VirtualFileSystem.Node node = vfs.lookup(file);
+                return node != null && !node.isDirectory ? vfs.read(node) : null;
+            }
+            return FileSystemCore.readFully(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // 写入文件
+    public boolean writeFileSync(String path, String data) {
+        return writeText(getSafeFile(path), data);
+    }
+
+    private boolean writeText(File file, String data) {
+        try {
+            if (writeBehindSaves && !closed && file.getName().endsWith(".rpgsave")) {
+                // 存档交给后台线程原子写入，连续写入会被合并；close() 之后写入线程已停止，直接写
+                writeQueue.enqueue(file, data);
+                return true;
+            }
+            writeQueue.await(file.getPath());
+            writeFully(file, data.getBytes(StandardCharsets.UTF_8));
+            // 直写缓存，下次读取无需再访问磁盘
+            contentCache.put(file.getPath(), file.length(), file.lastModified(), data);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // 写入二进制内容，data 为 latin1 二进制字符串（Buffer/Uint8Array 由 JS 端转换）
+    public boolean writeBinarySync(String path, String data) {
+        return writeBytes(path, FileSystemCore.encode(data, "latin1"));
+    }
+
+    // 写入原始字节（writeBinarySync 和 BinaryChannel 共用）
+    boolean writeBytes(String path, byte[] data) {
+        try {
+            File file = getSafeFile(path);
+            writeQueue.await(file.getPath());
+            writeFully(file, data);
+            contentCache.remove(file.getPath());
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void writeFully(File file, byte[] data) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+        metadataCache.invalidate(file);
+    }
+
+    // 检查文件是否存在
+    public boolean existsSync(String path) {
+        File file = getSafeFile(path);
+        if (writeQueue.isPending(file.getPath())) {
+            return true;
+        }
+        return metadataCache.get(file).exists || vfs.lookup(file) != null;
+    }
+
+    // 读取目录
+    public String readdirSync(String path) {
+        File dir = getSafeFile(path);
+        FileMetadataCache.Entry entry = metadataCache.get(dir);
+        // 尚未落盘的存档
+        Set<String> queued = writeQueue.pendingNames(dir);
+        Set<String> lower = vfs.listLower(dir);
+        if (lower != null || !queued.isEmpty()) {
+            // 与补丁目录、APK 中的同名目录以及延迟写入的文件合并
+            Set<String> names = lower != null ? lower : new LinkedHashSet<String>();
+            String[] list = entry.isDirectory ? dir.list() : null;
+            if (list != null) {
+                names.addAll(Arrays.asList(list));
+            }
+            names.addAll(queued);
+            return FileSystemCore.listJson(names.toArray(new String[0]));
+        }
+        if (!entry.isDirectory) {
+            return null; // 返回null，让JavaScript抛出错误
+        }
+        if (entry.listJson != null) {
+            return entry.listJson;
+        }
+
+        String[] list = dir.list();
+        if (list == null) {
+            list = new String[0];
+        }
+
+        String result = FileSystemCore.listJson(list);
+        metadataCache.putList(dir, entry, result);
+        return result;
+    }
+
+    // 创建目录
+    public boolean mkdirSync(String path) {
+        File dir = getSafeFile(path);
+        if(dir.exists() || vfs.lookup(dir) != null){
+            return false;
+        }
+        boolean success = dir.mkdirs();
+        metadataCache.invalidate(dir);
+        return success;
+    }
+
+    // 删除文件
+    public boolean unlinkSync(String path) {
+        File file = getSafeFile(path);
+        // 取消尚未落盘的写入；文件只存在于队列中时也算删除成功
+        boolean queued = writeQueue.take(file.getPath()) != null;
+        boolean success = file.delete() || queued;
+        metadataCache.invalidate(file);
+        contentCache.remove(file.getPath());
+        return success;
+    }
+
+    // 删除文件
+    public boolean rmdirSync(String path) {
+        File dir = getSafeFile(path);
+        // 还有尚未落盘的文件时目录不为空
+        boolean success = writeQueue.pendingNames(dir).isEmpty() && dir.delete();
+        metadataCache.invalidate(dir);
+        return success;
+    }
+    // 重命名/移动文件（目标已存在时覆盖）
+    public boolean renameSync(String oldPath, String newPath) {
+        File from = getSafeFile(oldPath);
+        File to = getSafeFile(newPath);
+        String queued = writeQueue.take(from.getPath());
+        // 目标会被覆盖，它尚未落盘的写入不再需要
+        writeQueue.take(to.getPath());
+        if (queued != null) {
+            // 源文件还在延迟写入队列中：把数据直接写到新路径，旧文件（如已落盘）删除
+            from.delete();
+            metadataCache.invalidate(from);
+            contentCache.remove(from.getPath());
+            return writeText(to, queued);
+        }
+        if (!from.exists()) {
+            return false;
+        }
+        File parent = to.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        boolean success = from.renameTo(to);
+        metadataCache.invalidate(from);
+        metadataCache.invalidate(to);
+        contentCache.remove(from.getPath());
+        contentCache.remove(to.getPath());
+        return success;
+    }
+
+    // 追加写入，只写入新增部分
+    public boolean appendFileSync(String path, String data) {
+        File file = getSettledFile(path);
+        copyUp(file);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            FileChannel channel = fos.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            metadataCache.invalidate(file);
+            contentCache.remove(file.getPath());
+        }
+    }
+
+    // 复制文件（二进制安全，使用 transferTo）
+    public boolean copyFileSync(String srcPath, String destPath) {
+        File src = getSafeFile(srcPath);
+        File dest = getSafeFile(destPath);
+        String queued = writeQueue.peek(src.getPath());
+        // 源和目标是同一个文件时直接返回，否则打开输出流会先把它截断为空
+        if (FileSystemCore.isSameFile(src, dest)) {
+            return queued != null || isVirtualFile(src);
+        }
+        // 目标会被覆盖，它尚未落盘的写入不再需要
+        writeQueue.take(dest.getPath());
+        if (queued != null) {
+            // 源文件还在延迟写入队列中：直接复制队列中的数据
+            return writeText(dest, queued);
+        }
+        if (!src.exists()) {
+            // 从补丁目录或 APK 中复制
+            VirtualFileSystem.Node node = vfs.lookup(src);
+            if (node != null && !node.isDirectory) {
+                try {
+                    src = vfs.localFile(node);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+        }
+        if (!src.isFile()) {
+            return false;
+        }
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (FileInputStream fis = new FileInputStream(src);
+             FileOutputStream fos = new FileOutputStream(dest)) {
+            FileChannel in = fis.getChannel();
+            FileChannel out = fos.getChannel();
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            metadataCache.invalidate(dest);
+            contentCache.remove(dest.getPath());
+        }
+    }
+
+    // 截断（或以 0 填充扩展）文件到指定长度
+    public boolean truncateSync(String path, double length) {
+        File file = getSettledFile(path);
+        copyUp(file);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength((long) Math.max(0, length));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            metadataCache.invalidate(file);
+            contentCache.remove(file.getPath());
+        }
+    }
+
+    // 获取文件信息
+    public String statSync(String path) {
+        File file = getSafeFile(path);
+        WriteBehindQueue.Pending queued = writeQueue.find(file.getPath());
+        if (queued != null) {
+            // 尚未落盘的存档：大小按队列中的数据计算，修改时间为入队时间
+            return FileSystemCore.statJson(true, false,
+                    queued.data.getBytes(StandardCharsets.UTF_8).length, queued.time);
+        }
+        FileMetadataCache.Entry entry = metadataCache.get(file);
+        if (!entry.exists) {
+            VirtualFileSystem.Node node = vfs.lookup(file);
+            return node != null ? FileSystemCore.statJson(!node.isDirectory, node.isDirectory, node.size, node.mtime) : null;
+        }
+        if (entry.statJson != null) {
+            return entry.statJson;
+        }
+
+        String json = FileSystemCore.statJson(entry.isFile, entry.isDirectory, entry.size, entry.mtime);
+        metadataCache.putStat(entry, json);
+        return json;
+    }
+
+
+    // 打开文件，返回 fd；不存在时返回 -1，其他错误返回 -2
+    public int openSync(String path, String flags) {
+        try {
+            File file = getSettledFile(path);
+            if (!file.exists()) {
+                VirtualFileSystem.Node node = vfs.lookup(file);
+                if (node != null && !node.isDirectory) {
+                    if (flags == null || flags.isEmpty() || flags.equals("r") || flags.equals("rs")) {
+                        // 只读时直接打开下层文件
+                        file = vfs.localFile(node);
+                    } else if (!flags.startsWith("w")) {
+                        copyUp(file);
+                    }
+                }
+            }
+            return descriptors.open(file, flags);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -2;
+        }
+    }
+
+    // 定位读取，返回 latin1 编码的二进制字符串（每个字符对应一个字节）；position < 0 表示当前位置
+    public String readSync(int fd, int length, double position) {
+        try {
+            byte[] data = descriptors.read(fd, length, (long) position);
+            return FileSystemCore.decode(data, "latin1");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    // 写入；encoding 为 latin1/binary 时 data 是二进制字符串，否则按 UTF-8 编码；返回写入字节数，失败返回 -1
+    public int writeSync(int fd, String data, double position, String encoding) {
+        try {
+            byte[] bytes = FileSystemCore.encode(data, encoding);
+            int written = descriptors.write(fd, bytes, (long) position);
+            File file = descriptors.get(fd).file;
+            metadataCache.invalidate(file);
+            contentCache.remove(file.getPath());
+            return written;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    // 关闭 fd
+    public boolean closeSync(int fd) {
+        try {
+            FileDescriptorTable.OpenFile openFile = descriptors.close(fd);
+            if (openFile == null) {
+                return false;
+            }
+            if (!openFile.readOnly) {
+                metadataCache.invalidate(openFile.file);
+                contentCache.remove(openFile.file.getPath());
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // 按 fd 获取文件信息
+    public String fstatSync(int fd) {
+        FileDescriptorTable.OpenFile openFile = descriptors.get(fd);
+        if (openFile == null) {
+            return null;
+        }
+        try {
+            return FileSystemCore.statJson(true, false, descriptors.size(fd), openFile.file.lastModified());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // fd 对应的文件（异步读取按文件选择线程），未打开时为 null
+    File getOpenFile(int fd) {
+        FileDescriptorTable.OpenFile openFile = descriptors.get(fd);
+        return openFile != null ? openFile.file : null;
+    }
+
+    // 批量操作：一次桥接调用完成多个 exists/stat/readdir/小文件读取
+    // ops 每行一个操作，首字符为操作码（e=exists, s=stat, d=readdir, r=read），其后为路径（路径中的 \ 和换行转义为 \\ 和 \n）
+    // 返回 JSON 数组，顺序与 ops 一致；读取超过上限时该项为 false
+    public String batchSync(String ops) {
+        StringBuilder json = new StringBuilder("[");
+        List<String> parsed = FileSystemCore.parseBatch(ops);
+        for (int i = 0; i < parsed.size(); i += 2) {
+            if (i > 0) {
+                json.append(",");
+            }
+            appendBatchResult(json, parsed.get(i).charAt(0), parsed.get(i + 1));
+        }
+        json.append("]");
+        return json.toString();
+    }
+
+    private void appendBatchResult(StringBuilder json, char op, String path) {
+        switch (op) {
+            case 'e':
+                json.append(existsSync(path));
+                break;
+            case 's': {
+                String stat = statSync(path);
+                json.append(stat != null ? stat : "null");
+                break;
+            }
+            case 'd': {
+                String list = readdirSync(path);
+                json.append(list != null ? list : "null");
+                break;
+            }
+            case 'r': {
+                File file = getSafeFile(path);
+                String pending = writeQueue.peek(file.getPath());
+                FileMetadataCache.Entry entry = metadataCache.get(file);
+                VirtualFileSystem.Node node = entry.exists ? null : vfs.lookup(file);
+                boolean isFile = node != null ? !node.isDirectory : entry.isFile;
+                long size = node != null ? node.size : entry.size;
+                if (pending != null) {
+                    json.append(FileSystemCore.escapeJson(pending));
+                } else if (!isFile) {
+                    json.append("null");
+                } else if (size > BATCH_READ_LIMIT) {
+                    json.append("false");
+                } else {
+                    String data = readFileSync(path, "utf-8");
+                    json.append(data != null ? FileSystemCore.escapeJson(data) : "null");
+                }
+                break;
+            }
+            default:
+                json.append("null");
+                break;
+        }
+    }
+
+    // 解析并读取 require() 的模块，一次返回 {"id", "json", "source"}；找不到时返回 null
+    // parentDir 为发起 require 的模块所在目录（顶层为 /）
+    public String resolveModule(String request, String parentDir) {
+        String id = moduleResolver.resolve(request, parentDir);
+        if (id == null) {
+            return null;
+        }
+        String source = readFileSync(id, "utf-8");
+        if (source == null) {
+            return null;
+        }
+        return "{\"id\":" + FileSystemCore.escapeJson(id)
+                + ",\"json\":" + id.endsWith(".json")
+                + ",\"source\":" + FileSystemCore.escapeJson(source) + "}";
+    }
+
+    public String getMetadataCacheStats() {
+        return metadataCache.getStats();
+    }
+
+    public String getContentCacheStats() {
+        return contentCache.getStats();
+    }
+
+    public String getWriteQueueStats() {
+        return writeQueue.getStats();
+    }
+
+    // 各缓存的命中情况（JSON 的成员，不含外层括号）
+    public String getCacheStats() {
+        return "\"metadataCache\":" + metadataCache.getStats()
+                + ",\"contentCache\":" + contentCache.getStats()
+                + ",\"writeQueue\":" + writeQueue.getStats();
+    }
+
+    // 等待所有延迟写入落盘
+    public void flushWrites() {
+        writeQueue.flush();
+    }
+
+    // 内存紧张时收缩缓存（由 MemoryTrimmer 按策略调用）
+    public void trimCaches(MemoryTrimPolicy.Plan plan) {
+        contentCache.trimToSize(plan.scale(contentCache.getMaxBytes()));
+        if (plan.clearMetadata()) {
+            metadataCache.clear();
+            vfs.clearCaches();
+        }
+    }
+
+    // 写完延迟写入的存档后停止写入线程，关闭打开的文件描述符，停止目录监听；之后的存档直接写入
+    public void close() {
+        closed = true;
+        writeQueue.close();
+        descriptors.closeAll();
+        metadataCache.close();
+    }
+}
@@ -0,0 +1,246 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// FileSystemInterface 中与 Android 无关的热点逻辑：路径限制、JSON 转义、目录列表/stat 的 JSON、整文件读取、
+// Buffer 的两种传输格式（latin1 字符串和 BinaryChannel 的 ArrayBuffer 帧）
+// 纯 Java 实现，可以直接在 JVM 上运行和测量
+public final class FileSystemCore {
+    // readFileSync 能一次读入的最大文件（更大的文件请用 openSync/readSync 分块读取）
+    static final long READ_FILE_LIMIT = Integer.MAX_VALUE - 8;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private FileSystemCore() {
+    }
+
+    // 把用户路径解析为 baseDir 下的规范路径；越界或无法解析时返回 baseDir
+    // baseDirPath 为 baseDir 的规范路径
+    public static File resolveSafe(File baseDir, String baseDirPath, String path) {
+        // 移除开头的斜杠和点
+        String cleanPath = path.replaceFirst("^[./]+", "");
+        File file = new File(baseDir, cleanPath);
+        try {
+            String normalizedPath = file.getCanonicalPath();
+            // 确保路径不会跳出应用目录（/files-other 这样的同名前缀也不行）
+            if (!normalizedPath.equals(baseDirPath) && !normalizedPath.startsWith(baseDirPath + File.separator)) {
+                return baseDir;
+            }
+            return new File(normalizedPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return baseDir;
+        }
+    }
+
+    // 按规范路径比较（经过符号链接、.. 等不同写法指向同一文件也算相同）
+    public static boolean isSameFile(File a, File b) {
+        try {
+            return a.getCanonicalPath().equals(b.getCanonicalPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // 拆分 batchSync 的操作列表：每行为操作码 + 路径，路径中的 \ 和换行分别转义为 \\ 和 \n
+    // 返回 [操作码, 路径, 操作码, 路径, ...]，空行跳过
+    public static List<String> parseBatch(String ops) {
+        List<String> parsed = new ArrayList<>();
+        int start = 0;
+        while (start < ops.length()) {
+            int end = ops.indexOf('\n', start);
+            if (end < 0) {
+                end = ops.length();
+            }
+            if (end > start) {
+                parsed.add(ops.substring(start, start + 1));
+                parsed.add(unescapeBatchPath(ops.substring(start + 1, end)));
+            }
+            start = end + 1;
+        }
+        return parsed;
+    }
+
+    static String unescapeBatchPath(String path) {
+        if (path.indexOf('\\') < 0) {
+            return path;
+        }
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < path.length()) {
+                c = path.charAt(++i);
+                sb.append(c == 'n' ? '\n' : c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // 带引号的 JSON 字符串；null 返回 "null"
+    public static String escapeJson(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        appendJson(sb, s);
+        return sb.toString();
+    }
+
+    // 把带引号的 JSON 字符串追加到 sb（不产生中间字符串）
+    public static void appendJson(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        int length = s.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            String escape;
+            switch (c) {
+                case '"': escape = "\\\""; break;
+                case '\\': escape = "\\\\"; break;
+                case '/': escape = "\\/"; break;
+                case '\b': escape = "\\b"; break;
+                case '\f': escape = "\\f"; break;
+                case '\n': escape = "\\n"; break;
+                case '\r': escape = "\\r"; break;
+                case '\t': escape = "\\t"; break;
+                default:
+                    if (c >= ' ') {
+                        continue;
+                    }
+                    escape = null;
+                    break;
+            }
+            // 不需要转义的连续字符整段追加
+            sb.append(s, run, i);
+            run = i + 1;
+            if (escape != null) {
+                sb.append(escape);
+            } else {
+                sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            }
+        }
+        sb.append(s, run, length);
+        sb.append('"');
+    }
+
+    // readdirSync 的结果：文件名的 JSON 数组
+    public static String listJson(String[] names) {
+        int estimate = 2;
+        for (String name : names) {
+            estimate += name.length() + 3;
+        }
+        StringBuilder json = new StringBuilder(estimate);
+        json.append('[');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendJson(json, names[i]);
+        }
+        return json.append(']').toString();
+    }
+
+    // statSync/fstatSync 的结果（不用 String.format，避免每次解析格式串）
+    public static String statJson(boolean isFile, boolean isDirectory, long size, long mtime) {
+        return "{\"_isFile\":" + isFile
+                + ",\"_isDirectory\":" + isDirectory
+                + ",\"size\":" + size
+                + ",\"mtime\":" + mtime + "}";
+    }
+
+    // 完整读取文件；单次 read 可能读不满，需要循环读取；超过上限返回 null
+    public static byte[] readFully(File file) throws IOException {
+        long length = file.length();
+        if (length > READ_FILE_LIMIT) {
+            return null;
+        }
+        try (FileInputStream fis = new FileInputStream(file)) {
+            byte[] data = new byte[(int) length];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = fis.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+            if (offset < data.length) {
+                // 读取期间文件被截短
+                byte[] shorter = new byte[offset];
+                System.arraycopy(data, 0, shorter, 0, offset);
+                return shorter;
+            }
+            return data;
+        }
+    }
+
+    // latin1/binary：JS 字符串的每个字符对应一个字节，经 JavascriptInterface 传递 Buffer 时不丢失任何字节
+    static boolean isBinaryEncoding(String encoding) {
+        return "latin1".equals(encoding) || "binary".equals(encoding);
+    }
+
+    // 按 Node.js 的编码名把 JS 传来的字符串转成要写入的字节
+    public static byte[] encode(String data, String encoding) {
+        return data.getBytes(isBinaryEncoding(encoding) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    // 读取的字节转成返回给 JS 的字符串
+    public static String decode(byte[] data, String encoding) {
+        return new String(data, isBinaryEncoding(encoding) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    // BinaryChannel 写入请求：[id:int32][路径长度:int32][路径 UTF-8][内容]
+    public static final class BinaryWrite {
+        public final int id;
+        public final String path;
+        public final byte[] data;
+
+        BinaryWrite(int id, String path, byte[] data) {
+            this.id = id;
+            this.path = path;
+            this.data = data;
+        }
+    }
+
+    // 与 AndroidFSBinary.write 的编码对应（测试和基准测试用）
+    static byte[] binaryWriteRequest(int id, String path, byte[] data) {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] request = new byte[8 + pathBytes.length + data.length];
+        ByteBuffer.wrap(request).putInt(id).putInt(pathBytes.length).put(pathBytes).put(data);
+        return request;
+    }
+
+    public static BinaryWrite parseBinaryWrite(byte[] request) {
+        ByteBuffer header = ByteBuffer.wrap(request);
+        int id = header.getInt();
+        int pathLength = header.getInt();
+        if (pathLength < 0 || pathLength > request.length - 8) {
+            throw new IllegalArgumentException("Bad path length: " + pathLength);
+        }
+        String path = new String(request, 8, pathLength, StandardCharsets.UTF_8);
+        int offset = 8 + pathLength;
+        byte[] data = new byte[request.length - offset];
+        System.arraycopy(request, offset, data, 0, data.length);
+        return new BinaryWrite(id, path, data);
+    }
+
+    // BinaryChannel 读取结果：[id:int32][内容]，头部和内容放在同一个 ArrayBuffer 中，页面端一次消息即可取回
+    public static byte[] binaryReadResponse(int id, byte[] data) {
+        byte[] response = new byte[4 + data.length];
+        ByteBuffer.wrap(response).putInt(id);
+        System.arraycopy(data, 0, response, 4, data.length);
+        return response;
+    }
+}
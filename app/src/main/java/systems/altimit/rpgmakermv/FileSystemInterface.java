@@ -1,221 +1,454 @@
 package systems.altimit.rpgmakermv;
 
 import android.content.Context;
+import android.util.Log;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebView;
-import android.os.Environment;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+// AndroidFS 桥：同步调用转给 FileSystemBackend，异步调用在后台线程上执行后按帧合并回调给 JS
 public class FileSystemInterface {
-    private Context context;
-    private WebView webView;
-    private File baseDir;
+    private static final String TAG = "AndroidFS";
+    // 异步 I/O 线程数（有界，避免存档时开出大量线程）；同一路径的请求总落在同一个线程上，按提交顺序执行
+    private static final int ASYNC_THREADS = 2;
+    // close() 等待已提交的异步请求的最长时间
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final WebView webView;
+    private final FileSystemBackend backend;
+    private final VirtualFileSystem vfs;
+
+    // 异步请求：后台线程执行，结果按帧合并成一次 evaluateJavascript 回调
+    private final ThreadPoolExecutor[] asyncExecutors = new ThreadPoolExecutor[ASYNC_THREADS];
+    private final ConcurrentHashMap<Integer, String> asyncResults = new ConcurrentHashMap<>();
+    private final StringBuilder asyncBatch = new StringBuilder();
+    private boolean asyncDeliveryScheduled;
+    // close() 之后不再接受异步请求
+    private volatile boolean closed;
+    private final Runnable deliverAsyncResults = new Runnable() {
+        @Override
+        public void run() {
+            String batch;
+            synchronized (asyncBatch) {
+                batch = asyncBatch.toString();
+                asyncBatch.setLength(0);
+                asyncDeliveryScheduled = false;
+            }
+            // close() 之后页面已经销毁
+            if (!batch.isEmpty() && !closed) {
+                webView.evaluateJavascript("if (window.AndroidFSAsync) AndroidFSAsync._complete([" + batch + "]);", null);
+            }
+        }
+    };
 
     public FileSystemInterface(Context context, WebView webView) {
-        this.context = context;
         this.webView = webView;
 
         // 获取 Android/data/com.package.name/files 目录
-        this.baseDir = context.getExternalFilesDir(null);
-        if (this.baseDir == null) {
+        File baseDir = context.getExternalFilesDir(null);
+        if (baseDir == null) {
             // 如果外部存储不可用，使用内部存储
-            this.baseDir = context.getFilesDir();
+            baseDir = context.getFilesDir();
         }
-    }
-
-    // 将用户路径转换为安全路径（限制在应用目录内）
-    private File getSafeFile(String path) {
-        // 移除开头的斜杠和点
-        String cleanPath = path.replaceFirst("^[./]+", "");
-
-        // 创建相对于 baseDir 的文件
-        File file = new File(baseDir, cleanPath);
 
+        // baseDir 的规范路径只计算一次
         try {
-            // 获取规范化路径
-            String normalizedPath = file.getCanonicalPath();
-
-            // 确保路径不会跳出应用目录
-            if (!normalizedPath.startsWith(baseDir.getCanonicalPath())) {
-                // 如果尝试跳出应用目录，返回 null 或 baseDir
-                return baseDir;
-            }
-
-            return file;
+            baseDir = baseDir.getCanonicalFile();
         } catch (IOException e) {
             e.printStackTrace();
-            return baseDir;
+            baseDir = baseDir.getAbsoluteFile();
         }
+        this.vfs = new VirtualFileSystem(baseDir, baseDir.getPath(), new ApkAssets(context.getAssets()),
+                ApkAssets.installTime(context), new File(context.getCacheDir(), VirtualFileSystem.EXTRACT_DIR));
+        this.backend = new FileSystemBackend(baseDir, vfs, new FileObserverWatcher(),
+                BuildConfig.FILE_CACHE_SIZE_KB * 1024L, BuildConfig.WRITE_BEHIND_SAVES,
+                new FileSystemBackend.Listener() {
+                    @Override
+                    public void onWriteFailed(File file, IOException error) {
+                        Log.e(TAG, "Failed to write " + file + " after " + WriteBehindQueue.MAX_RETRIES + " retries", error);
+                        reportWriteFailure(file, "EIO");
+                    }
+                });
+
+        for (int i = 0; i < ASYNC_THREADS; i++) {
+            asyncExecutors[i] = new ThreadPoolExecutor(1, 1,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "AndroidFS-async");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            asyncExecutors[i].allowCoreThreadTimeOut(true);
+        }
+    }
+
+    VirtualFileSystem getVirtualFileSystem() {
+        return vfs;
     }
 
-    // 读取文件
+    // 读取文件；encoding 为 latin1/binary 时返回二进制字符串（每个字符对应一个字节），JS 端转成 Buffer
     @JavascriptInterface
     public String readFileSync(String path, String encoding) {
-        try {
-            File file = getSafeFile(path);
-            if (!file.exists()) {
-                return null;
-            }
-
-            FileInputStream fis = new FileInputStream(file);
-            byte[] data = new byte[(int) file.length()];
-            fis.read(data);
-            fis.close();
-
-            if (encoding.toLowerCase().equals("utf-8") || encoding.toLowerCase().equals("utf8")) {
-                return new String(data, StandardCharsets.UTF_8);
-            } else {
-                return new String(data);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
+        return backend.readFileSync(path, encoding);
     }
 
     // 写入文件
     @JavascriptInterface
     public boolean writeFileSync(String path, String data) {
-        try {
-            File file = getSafeFile(path);
-            File parent = file.getParentFile();
-            if (parent != null && !parent.exists()) {
-                parent.mkdirs();
-            }
+        return backend.writeFileSync(path, data);
+    }
 
-            FileOutputStream fos = new FileOutputStream(file);
-            fos.write(data.getBytes(StandardCharsets.UTF_8));
-            fos.close();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+    // 写入二进制内容，data 为 latin1 二进制字符串（Buffer/Uint8Array 由 JS 端转换）
+    @JavascriptInterface
+    public boolean writeBinarySync(String path, String data) {
+        return backend.writeBinarySync(path, data);
     }
 
     // 检查文件是否存在
     @JavascriptInterface
     public boolean existsSync(String path) {
-        File file = getSafeFile(path);
-        return file.exists();
+        return backend.existsSync(path);
     }
 
-    // 读取目录
+    // 读取目录，不存在时返回 null（由 JS 抛出错误）
     @JavascriptInterface
     public String readdirSync(String path) {
-        File dir = getSafeFile(path);
-        if (dir == null || !dir.exists() || !dir.isDirectory()) {
-            return null; // 返回null，让JavaScript抛出错误
-        }
-
-        String[] list = dir.list();
-        if (list == null) {
-            list = new String[0];
-        }
-
-        // 构建JSON数组字符串，手动转义字符串中的特殊字符
-        // 注意：这里我们添加".."作为第一个元素
-        StringBuilder json = new StringBuilder("[");
-        boolean isFirst = true;
-        for (String file : list) {
-            if(!isFirst){
-                json.append(",");
-            }
-            else{
-                isFirst = false;
-            }
-            // 对每个文件名进行JSON转义
-            json.append(escapeJSON(file));
-        }
-        json.append("]");
-        return json.toString();
-    }
-
-    // 简单的JSON字符串转义
-    private String escapeJSON(String s) {
-        if (s == null) return "null";
-        StringBuilder sb = new StringBuilder();
-        sb.append('"');
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            switch (c) {
-                case '"': sb.append("\\\""); break;
-                case '\\': sb.append("\\\\"); break;
-                case '/': sb.append("\\/"); break;
-                case '\b': sb.append("\\b"); break;
-                case '\f': sb.append("\\f"); break;
-                case '\n': sb.append("\\n"); break;
-                case '\r': sb.append("\\r"); break;
-                case '\t': sb.append("\\t"); break;
-                default:
-                    if (c < ' ') {
-                        sb.append(String.format("\\u%04x", (int)c));
-                    } else {
-                        sb.append(c);
-                    }
-                    break;
-            }
-        }
-        sb.append('"');
-        return sb.toString();
+        return backend.readdirSync(path);
     }
 
     // 创建目录
     @JavascriptInterface
     public boolean mkdirSync(String path) {
-        File dir = getSafeFile(path);
-        if(dir.exists()){
-            return false;
-        }
-        return dir.mkdirs();
+        return backend.mkdirSync(path);
     }
 
     // 删除文件
     @JavascriptInterface
     public boolean unlinkSync(String path) {
-        File file = getSafeFile(path);
-        return file.delete();
+        return backend.unlinkSync(path);
     }
 
-    // 删除文件
+    // 删除目录
     @JavascriptInterface
     public boolean rmdirSync(String path) {
-        File dir = getSafeFile(path);
-        return dir.delete();
+        return backend.rmdirSync(path);
+    }
+
+    // 重命名/移动文件（目标已存在时覆盖）
+    @JavascriptInterface
+    public boolean renameSync(String oldPath, String newPath) {
+        return backend.renameSync(oldPath, newPath);
+    }
+
+    // 追加写入
+    @JavascriptInterface
+    public boolean appendFileSync(String path, String data) {
+        return backend.appendFileSync(path, data);
     }
+
+    // 复制文件
+    @JavascriptInterface
+    public boolean copyFileSync(String srcPath, String destPath) {
+        return backend.copyFileSync(srcPath, destPath);
+    }
+
+    // 截断（或以 0 填充扩展）文件到指定长度
+    @JavascriptInterface
+    public boolean truncateSync(String path, double length) {
+        return backend.truncateSync(path, length);
+    }
+
     // 获取文件信息
     @JavascriptInterface
     public String statSync(String path) {
-        File file = getSafeFile(path);
-        if (!file.exists()) {
-            return null;
+        return backend.statSync(path);
+    }
+
+    // 元数据缓存命中统计
+    @JavascriptInterface
+    public String getMetadataCacheStats() {
+        return backend.getMetadataCacheStats();
+    }
+
+    // 内容缓存命中统计
+    @JavascriptInterface
+    public String getContentCacheStats() {
+        return backend.getContentCacheStats();
+    }
+
+    // 延迟写入队列统计
+    @JavascriptInterface
+    public String getWriteQueueStats() {
+        return backend.getWriteQueueStats();
+    }
+
+    // 读取原始字节（BinaryChannel），不经过文本缓存
+    byte[] readBytes(String path) {
+        return backend.readBytes(path);
+    }
+
+    // 文件是否存在（BinaryChannel 的后台线程用来区分错误码）
+    boolean exists(String path) {
+        return backend.existsSync(path);
+    }
+
+    // 写入原始字节（BinaryChannel）
+    boolean writeBytes(String path, byte[] data) {
+        return backend.writeBytes(path, data);
+    }
+
+    // 等待所有延迟写入落盘（onPause/onDestroy 时调用）
+    public void flushWrites() {
+        backend.flushWrites();
+    }
+
+    // 释放所有后台资源（WebView 销毁后调用）：等待已提交的异步请求和延迟写入完成，
+    // 停止异步线程和写入线程，关闭打开的文件描述符，停止目录监听
+    // 最多等待 CLOSE_TIMEOUT_SECONDS 再加上写入队列的落盘时间，不要在主线程上调用
+    public void close() {
+        closed = true;
+        for (ThreadPoolExecutor executor : asyncExecutors) {
+            executor.shutdown();
+        }
+        for (ThreadPoolExecutor executor : asyncExecutors) {
+            try {
+                if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    Log.w(TAG, "Async requests still running after " + CLOSE_TIMEOUT_SECONDS + "s");
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            }
         }
+        backend.close();
+    }
+
+    // 内存紧张时收缩缓存（由 MemoryTrimmer 按策略调用）
+    public void trimCaches(MemoryTrimPolicy.Plan plan) {
+        backend.trimCaches(plan);
+    }
+
+    // 按规范路径选择线程：同一文件上的异步请求（包括二进制通道）不会乱序，较早的存档不会覆盖较新的
+    // 任务在后台线程上直接调用 backend，不经过可被 ProfilingFileSystemInterface 覆盖的同步方法，
+    // 桥统计和跟踪里每个异步请求只在投递时记一次
+    void executeFor(String path, Runnable task) {
+        executeFor(backend.getSafeFile(path), task);
+    }
+
+    private void executeFor(File file, Runnable task) {
+        if (closed) {
+            Log.w(TAG, "Dropping async request after close: " + file);
+            return;
+        }
+        int index = file != null ? (file.getPath().hashCode() & 0x7fffffff) % ASYNC_THREADS : 0;
+        asyncExecutors[index].execute(task);
+    }
+
+    // 异步读取文件，结果通过 AndroidFSAsync._complete 回调
+    @JavascriptInterface
+    public void readFileAsync(final int id, final String path, final String encoding) {
+        executeFor(backend.getSafeFile(path), new Runnable() {
+            @Override
+            public void run() {
+                String data = backend.readFileSync(path, encoding);
+                completeAsync(id, data != null ? null : backend.existsSync(path) ? "EIO" : "ENOENT", data);
+            }
+        });
+    }
+
+    // 异步写入文件
+    @JavascriptInterface
+    public void writeFileAsync(final int id, final String path, final String data) {
+        executeFor(backend.getSafeFile(path), new Runnable() {
+            @Override
+            public void run() {
+                completeAsync(id, backend.writeFileSync(path, data) ? null : "EIO", null);
+            }
+        });
+    }
+
+    // 异步创建目录
+    @JavascriptInterface
+    public void mkdirAsync(final int id, final String path) {
+        executeFor(backend.getSafeFile(path), new Runnable() {
+            @Override
+            public void run() {
+                completeAsync(id, backend.mkdirSync(path) ? null : backend.existsSync(path) ? "EEXIST" : "EIO", null);
+            }
+        });
+    }
+
+    // 异步删除文件
+    @JavascriptInterface
+    public void unlinkAsync(final int id, final String path) {
+        executeFor(backend.getSafeFile(path), new Runnable() {
+            @Override
+            public void run() {
+                completeAsync(id, backend.unlinkSync(path) ? null : backend.existsSync(path) ? "EIO" : "ENOENT", null);
+            }
+        });
+    }
+
+    // 异步删除目录
+    @JavascriptInterface
+    public void rmdirAsync(final int id, final String path) {
+        executeFor(backend.getSafeFile(path), new Runnable() {
+            @Override
+            public void run() {
+                completeAsync(id, backend.rmdirSync(path) ? null : backend.existsSync(path) ? "ENOTEMPTY" : "ENOENT", null);
+            }
+        });
+    }
+
+    // 异步获取文件信息
+    @JavascriptInterface
+    public void statAsync(final int id, final String path) {
+        executeFor(backend.getSafeFile(path), new Runnable() {
+            @Override
+            public void run() {
+                String json = backend.statSync(path);
+                completeAsync(id, json != null ? null : "ENOENT", json);
+            }
+        });
+    }
+
+    // 异步读取目录
+    @JavascriptInterface
+    public void readdirAsync(final int id, final String path) {
+        executeFor(backend.getSafeFile(path), new Runnable() {
+            @Override
+            public void run() {
+                String json = backend.readdirSync(path);
+                completeAsync(id, json != null ? null : "ENOENT", json);
+            }
+        });
+    }
+
+    // 打开文件，返回 fd；不存在时返回 -1，其他错误返回 -2
+    @JavascriptInterface
+    public int openSync(String path, String flags) {
+        return backend.openSync(path, flags);
+    }
+
+    // 定位读取，返回 latin1 编码的二进制字符串（每个字符对应一个字节）；position < 0 表示当前位置
+    @JavascriptInterface
+    public String readSync(int fd, int length, double position) {
+        return backend.readSync(fd, length, position);
+    }
+
+    // 异步定位读取（用于 createReadStream），结果为 latin1 字符串
+    @JavascriptInterface
+    public void readAsync(final int id, final int fd, final int length, final double position) {
+        File file = backend.getOpenFile(fd);
+        executeFor(file, new Runnable() {
+            @Override
+            public void run() {
+                String data = backend.readSync(fd, length, position);
+                completeAsync(id, data != null ? null : "EBADF", data);
+            }
+        });
+    }
+
+    // 写入；encoding 为 latin1/binary 时 data 是二进制字符串，否则按 UTF-8 编码；返回写入字节数，失败返回 -1
+    @JavascriptInterface
+    public int writeSync(int fd, String data, double position, String encoding) {
+        return backend.writeSync(fd, data, position, encoding);
+    }
+
+    // 关闭 fd
+    @JavascriptInterface
+    public boolean closeSync(int fd) {
+        return backend.closeSync(fd);
+    }
+
+    // 按 fd 获取文件信息
+    @JavascriptInterface
+    public String fstatSync(int fd) {
+        return backend.fstatSync(fd);
+    }
+
+    // 取回异步请求的结果（只能取一次）
+    @JavascriptInterface
+    public String takeAsyncResult(int id) {
+        return asyncResults.remove(id);
+    }
+
+    // 记录异步结果，并在下一帧统一回调给 JS
+    private void completeAsync(int id, String errorCode, String data) {
+        if (data != null) {
+            asyncResults.put(id, data);
+        }
+        appendAsyncResult("[" + id + "," + (errorCode != null ? FileSystemCore.escapeJson(errorCode) : "null")
+                + "," + (data != null ? 1 : 0) + "]");
+    }
+
+    // 延迟写入最终失败：随异步结果一起送给 JS，id 为 0，第 4 项为相对路径
+    private void reportWriteFailure(File file, String errorCode) {
+        String path = file.getPath();
+        String baseDirPath = backend.getBaseDir().getPath();
+        if (path.startsWith(baseDirPath + File.separator)) {
+            path = path.substring(baseDirPath.length() + 1);
+        }
+        appendAsyncResult("[0," + FileSystemCore.escapeJson(errorCode) + ",0," + FileSystemCore.escapeJson(path) + "]");
+    }
+
+    private void appendAsyncResult(String result) {
+        synchronized (asyncBatch) {
+            if (asyncBatch.length() > 0) {
+                asyncBatch.append(',');
+            }
+            asyncBatch.append(result);
+            if (!asyncDeliveryScheduled) {
+                asyncDeliveryScheduled = true;
+                webView.postOnAnimation(deliverAsyncResults);
+            }
+        }
+    }
+
+    // 批量操作：一次桥接调用完成多个 exists/stat/readdir/小文件读取（格式见 FileSystemBackend.batchSync）
+    @JavascriptInterface
+    public String batchSync(String ops) {
+        return backend.batchSync(ops);
+    }
+
+    // 解析并读取 require() 的模块，一次返回 {"id", "json", "source"}；找不到时返回 null
+    // parentDir 为发起 require 的模块所在目录（顶层为 /）
+    @JavascriptInterface
+    public String resolveModule(String request, String parentDir) {
+        return backend.resolveModule(request, parentDir);
+    }
+
+    // 汇总统计（JSON）：桥调用耗时（开启 BRIDGE_PROFILING 时）以及各缓存的命中情况
+    @JavascriptInterface
+    public String getStats() {
+        return "{\"bridge\":" + getBridgeStats() + "," + backend.getCacheStats() + "}";
+    }
 
-        // 返回 JSON 字符串
-        return String.format("{\"_isFile\":%b,\"_isDirectory\":%b,\"size\":%d,\"mtime\":%d}",
-                file.isFile(),
-                file.isDirectory(),
-                file.length(),
-                file.lastModified());
+    // 未开启统计时为 null
+    protected String getBridgeStats() {
+        return "null";
     }
 
     // 新增：获取应用数据目录路径
     @JavascriptInterface
     public String getAppDataPath() {
-        return baseDir.getAbsolutePath();
+        return backend.getBaseDir().getAbsolutePath();
     }
 
     // 新增：获取绝对路径（仅供调试用）
     @JavascriptInterface
     public String getFullPath(String path) {
-        File file = getSafeFile(path);
+        File file = backend.getSafeFile(path);
         return file.getAbsolutePath();
     }
-}
\ No newline at end of file
+}
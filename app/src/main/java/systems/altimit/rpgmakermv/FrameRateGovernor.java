@@ -0,0 +1,151 @@
+package systems.altimit.rpgmakermv;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import java.util.Locale;
+
+// 帧率调节：根据温控状态、省电模式和输入空闲时间选择目标帧率，通过包装脚本写入 SceneManager 的主循环
+// 例如静止的菜单或设备发热时 60 → 30，严重过热时降到 20；有输入时立即恢复
+// 每次调整和各档位的累计时间输出到 logcat（FrameRateGovernor），注册为 AndroidGovernor
+public class FrameRateGovernor {
+    private static final String TAG = "FrameRateGovernor";
+
+    // 档位：满帧、降帧、过热
+    static final int[] TIER_FPS = {60, 30, 20};
+    // 菜单中无输入超过该时间后降帧
+    static final long MENU_IDLE_MILLIS = 3000;
+    // 任意场景无输入超过该时间后降帧
+    static final long IDLE_MILLIS = 30000;
+    // 检查间隔
+    private static final long TICK_MILLIS = 1000;
+
+    private final Player player;
+    private final PowerManager powerManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            update();
+            handler.postDelayed(this, TICK_MILLIS);
+        }
+    };
+
+    private volatile long lastInput = SystemClock.uptimeMillis();
+    private volatile boolean menu;
+    private volatile int tier;
+    private boolean running;
+    // 各档位的累计时间
+    private final long[] tierMillis = new long[TIER_FPS.length];
+    private long tierSince;
+
+    public FrameRateGovernor(Context context, Player player) {
+        this.player = player;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    // 根据当前状况选择档位
+    static int chooseTier(int thermalStatus, boolean powerSave, long idleMillis, boolean menu) {
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+            return 2;
+        }
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE || powerSave) {
+            return 1;
+        }
+        if (idleMillis >= IDLE_MILLIS || (menu && idleMillis >= MENU_IDLE_MILLIS)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        tierSince = SystemClock.uptimeMillis();
+        lastInput = tierSince;
+        handler.post(tick);
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        handler.removeCallbacks(tick);
+        accumulate(SystemClock.uptimeMillis());
+        Log.i(TAG, getSummary());
+    }
+
+    // 触摸、按键时调用；降帧状态下立即恢复
+    public void onInput() {
+        lastInput = SystemClock.uptimeMillis();
+        if (running && tier != 0) {
+            update();
+        }
+    }
+
+    private void update() {
+        long now = SystemClock.uptimeMillis();
+        int thermal = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && powerManager != null
+                ? powerManager.getCurrentThermalStatus() : 0;
+        boolean powerSave = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && powerManager != null
+                && powerManager.isPowerSaveMode();
+        long idle = now - lastInput;
+        int next = chooseTier(thermal, powerSave, idle, menu);
+        if (next == tier) {
+            return;
+        }
+        accumulate(now);
+        Log.i(TAG, String.format(Locale.ROOT, "%d -> %d fps (thermal=%d, powerSave=%b, idle=%ds, menu=%b)",
+                TIER_FPS[tier], TIER_FPS[next], thermal, powerSave, idle / 1000, menu));
+        TimelineRecorder.get().record("framerate", String.valueOf(TIER_FPS[next]));
+        tier = next;
+        player.evaluateJavascript("if (window.AndroidFrameRate) AndroidFrameRate.setTarget(" + TIER_FPS[next] + ");");
+    }
+
+    private void accumulate(long now) {
+        tierMillis[tier] += now - tierSince;
+        tierSince = now;
+    }
+
+    private String getSummary() {
+        StringBuilder sb = new StringBuilder("Time per tier:");
+        for (int i = 0; i < TIER_FPS.length; i++) {
+            sb.append(String.format(Locale.ROOT, " %dfps=%.1fs", TIER_FPS[i], tierMillis[i] / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    // 页面（重新）加载后取当前目标帧率
+    @JavascriptInterface
+    public int getTarget() {
+        return TIER_FPS[tier];
+    }
+
+    // 场景开始时由包装脚本调用；menu 表示 Scene_MenuBase 的子类
+    @JavascriptInterface
+    public void setScene(boolean menu) {
+        this.menu = menu;
+    }
+
+    // {"fps":当前目标,"tierMillis":{"60":..,"30":..,"20":..}}
+    @JavascriptInterface
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("{\"fps\":").append(TIER_FPS[tier]).append(",\"tierMillis\":{");
+        for (int i = 0; i < TIER_FPS.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(TIER_FPS[i]).append("\":").append(tierMillis[i]);
+        }
+        return sb.append("}}").toString();
+    }
+}
@@ -0,0 +1,315 @@
+package systems.altimit.rpgmakermv;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+
+// 屏幕手柄：一个覆盖在 WebView 上的视图，右下角为方向键（中间是确定键），左下角为一列功能键
+// 所有控件在一次 onDraw 中用缓存的 Path 绘制，只在按键状态变化时重绘
+// onTouchEvent 对所有触点做命中测试：方向键支持滑动切换和斜向，功能键之间也可以滑动切换
+// 布局和颜色来自 res/values/gamepad.xml
+public class GamepadView extends View {
+
+    // 按键状态变化；eventTime 为 MotionEvent.getEventTime()
+    public interface Listener {
+        void onButton(int keyCode, boolean down, long eventTime);
+    }
+
+    // 控件下标：0~3 为上下左右，4 为确定键，之后为功能键
+    private static final int UP = 0;
+    private static final int DOWN = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+    private static final int ACTION = 4;
+    private static final int FIRST_BUTTON = 5;
+
+    // 触点所在的控件：方向键、某个按键下标，或不在控件上
+    private static final int POINTER_NONE = -1;
+    private static final int POINTER_DPAD = -2;
+    private static final int MAX_POINTERS = 16;
+
+    // 8 个方向扇区（从正右方开始顺时针，屏幕坐标 y 向下）对应的方向键
+    private static final int[] SECTOR_MASKS = {
+            1 << RIGHT,
+            1 << RIGHT | 1 << DOWN,
+            1 << DOWN,
+            1 << DOWN | 1 << LEFT,
+            1 << LEFT,
+            1 << LEFT | 1 << UP,
+            1 << UP,
+            1 << UP | 1 << RIGHT,
+    };
+
+    private final Listener listener;
+    private final int[] keys;
+    private final String[] labels;
+
+    private final float buttonFraction;
+    private final float marginFraction;
+    private final float actionFraction;
+    private final float deadZoneFraction;
+
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint buttonPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint pressedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    // 按尺寸生成的缓存
+    private final Path dpadPath = new Path();
+    private final Path buttonPath = new Path();
+    private final Path strokePath = new Path();
+    private final Path arrowPath = new Path();
+    private final Path[] keyPaths;
+    private final RectF[] buttonRects;
+    private final float[] labelX;
+    private final float[] labelY;
+    private float dpadX;
+    private float dpadY;
+    private float dpadRadius;
+    private float actionRadius;
+
+    private final int[] pointerTargets = new int[MAX_POINTERS];
+    // 当前按下的控件（按下标的位掩码）
+    private int pressed;
+
+    public GamepadView(Context context, Listener listener) {
+        super(context);
+        this.listener = listener;
+
+        Resources res = context.getResources();
+        int[] buttonKeys = res.getIntArray(R.array.gamepad_button_keys);
+        String[] buttonLabels = res.getStringArray(R.array.gamepad_button_labels);
+        int count = FIRST_BUTTON + Math.min(buttonKeys.length, buttonLabels.length);
+        this.keys = new int[count];
+        this.labels = new String[count];
+        keys[UP] = KeyEvent.KEYCODE_DPAD_UP;
+        keys[DOWN] = KeyEvent.KEYCODE_DPAD_DOWN;
+        keys[LEFT] = KeyEvent.KEYCODE_DPAD_LEFT;
+        keys[RIGHT] = KeyEvent.KEYCODE_DPAD_RIGHT;
+        keys[ACTION] = res.getInteger(R.integer.gamepad_action_key);
+        for (int i = FIRST_BUTTON; i < count; i++) {
+            keys[i] = buttonKeys[i - FIRST_BUTTON];
+            labels[i] = buttonLabels[i - FIRST_BUTTON];
+        }
+
+        this.buttonFraction = res.getFraction(R.fraction.gamepad_button_size, 1, 1);
+        this.marginFraction = res.getFraction(R.fraction.gamepad_margin, 1, 1);
+        this.actionFraction = res.getFraction(R.fraction.gamepad_action_size, 1, 1);
+        this.deadZoneFraction = res.getFraction(R.fraction.gamepad_dead_zone, 1, 1);
+
+        fillPaint.setColor(res.getColor(R.color.gamepad_fill));
+        buttonPaint.setColor(res.getColor(R.color.gamepad_button_fill));
+        strokePaint.setColor(res.getColor(R.color.gamepad_stroke));
+        strokePaint.setStyle(Paint.Style.STROKE);
+        pressedPaint.setColor(res.getColor(R.color.gamepad_pressed));
+        textPaint.setColor(res.getColor(R.color.gamepad_text));
+        textPaint.setTextAlign(Paint.Align.CENTER);
+
+        this.keyPaths = new Path[count];
+        for (int i = 0; i < count; i++) {
+            keyPaths[i] = new Path();
+        }
+        this.buttonRects = new RectF[count];
+        this.labelX = new float[count];
+        this.labelY = new float[count];
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            pointerTargets[i] = POINTER_NONE;
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float size = Math.min(w, h) * buttonFraction;
+        float margin = size * marginFraction;
+        float radius = size / 2;
+
+        dpadPath.reset();
+        buttonPath.reset();
+        strokePath.reset();
+        arrowPath.reset();
+        strokePaint.setStrokeWidth(Math.max(2, size / 32));
+        textPaint.setTextSize(size / 4);
+
+        // 方向键：边长 3 个按钮加 2 个间距的正方形区域，四个方向各一个圆，中间是确定键
+        float box = size * 3 + margin * 2;
+        dpadRadius = box / 2;
+        dpadX = w - margin - dpadRadius;
+        dpadY = h - margin - dpadRadius;
+        float offset = dpadRadius - radius;
+        addCircle(UP, dpadX, dpadY - offset, radius, dpadPath);
+        addCircle(DOWN, dpadX, dpadY + offset, radius, dpadPath);
+        addCircle(LEFT, dpadX - offset, dpadY, radius, dpadPath);
+        addCircle(RIGHT, dpadX + offset, dpadY, radius, dpadPath);
+        float arrow = radius / 3;
+        addArrow(dpadX, dpadY - offset, 0, -arrow);
+        addArrow(dpadX, dpadY + offset, 0, arrow);
+        addArrow(dpadX - offset, dpadY, -arrow, 0);
+        addArrow(dpadX + offset, dpadY, arrow, 0);
+        actionRadius = size * actionFraction / 2;
+        addCircle(ACTION, dpadX, dpadY, actionRadius, buttonPath);
+
+        // 功能键：左下角一列，自下而上
+        float step = size + margin / 2;
+        for (int i = FIRST_BUTTON; i < keys.length; i++) {
+            float bottom = h - margin - step * (i - FIRST_BUTTON);
+            RectF rect = new RectF(margin, bottom - size, margin + size, bottom);
+            buttonRects[i] = rect;
+            buttonPath.addRect(rect, Path.Direction.CW);
+            strokePath.addRect(rect, Path.Direction.CW);
+            keyPaths[i].reset();
+            keyPaths[i].addRect(rect, Path.Direction.CW);
+            labelX[i] = rect.centerX();
+            labelY[i] = rect.centerY() - (textPaint.ascent() + textPaint.descent()) / 2;
+        }
+    }
+
+    private void addCircle(int index, float x, float y, float radius, Path fill) {
+        fill.addCircle(x, y, radius, Path.Direction.CW);
+        strokePath.addCircle(x, y, radius, Path.Direction.CW);
+        keyPaths[index].reset();
+        keyPaths[index].addCircle(x, y, radius, Path.Direction.CW);
+    }
+
+    // 指向 (dx, dy) 方向的三角形箭头
+    private void addArrow(float x, float y, float dx, float dy) {
+        arrowPath.moveTo(x + dx, y + dy);
+        arrowPath.lineTo(x - dx - dy, y - dy + dx);
+        arrowPath.lineTo(x - dx + dy, y - dy - dx);
+        arrowPath.close();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawPath(dpadPath, fillPaint);
+        canvas.drawPath(buttonPath, buttonPaint);
+        for (int i = 0; i < keys.length; i++) {
+            if ((pressed & 1 << i) != 0) {
+                canvas.drawPath(keyPaths[i], pressedPaint);
+            }
+        }
+        canvas.drawPath(strokePath, strokePaint);
+        canvas.drawPath(arrowPath, textPaint);
+        for (int i = FIRST_BUTTON; i < keys.length; i++) {
+            canvas.drawText(labels[i], labelX[i], labelY[i], textPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int action = event.getActionMasked();
+        int actionIndex = event.getActionIndex();
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                int target = hitTest(event.getX(actionIndex), event.getY(actionIndex), true);
+                if (action == MotionEvent.ACTION_DOWN && target == POINTER_NONE) {
+                    // 没有按在控件上，交给下面的 WebView
+                    return false;
+                }
+                setTarget(event.getPointerId(actionIndex), target);
+                break;
+            }
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_POINTER_UP:
+                setTarget(event.getPointerId(actionIndex), POINTER_NONE);
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                for (int i = 0; i < MAX_POINTERS; i++) {
+                    pointerTargets[i] = POINTER_NONE;
+                }
+                break;
+            default:
+                break;
+        }
+
+        int mask = 0;
+        for (int i = 0; i < event.getPointerCount(); i++) {
+            int id = event.getPointerId(i);
+            if (id >= MAX_POINTERS || pointerTargets[id] == POINTER_NONE) {
+                continue;
+            }
+            float x = event.getX(i);
+            float y = event.getY(i);
+            if (pointerTargets[id] == POINTER_DPAD) {
+                mask |= dpadMask(x, y);
+            } else {
+                // 在按键之间滑动时切换到手指下的按键，滑出所有按键则松开
+                int target = hitTest(x, y, false);
+                if (target >= 0) {
+                    pointerTargets[id] = target;
+                    mask |= 1 << target;
+                }
+            }
+        }
+        setPressed(mask, event.getEventTime());
+        return true;
+    }
+
+    // 松开所有按键（例如 Activity 暂停时）
+    public void releaseAll(long eventTime) {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            pointerTargets[i] = POINTER_NONE;
+        }
+        setPressed(0, eventTime);
+    }
+
+    private void setTarget(int pointerId, int target) {
+        if (pointerId < MAX_POINTERS) {
+            pointerTargets[pointerId] = target;
+        }
+    }
+
+    // allowDpad 为 false 时只检测按键（用于按键之间的滑动）
+    private int hitTest(float x, float y, boolean allowDpad) {
+        float dx = x - dpadX;
+        float dy = y - dpadY;
+        float distance = dx * dx + dy * dy;
+        if (distance <= actionRadius * actionRadius) {
+            return ACTION;
+        }
+        if (allowDpad && distance <= dpadRadius * dpadRadius) {
+            return POINTER_DPAD;
+        }
+        for (int i = FIRST_BUTTON; i < keys.length; i++) {
+            if (buttonRects[i] != null && buttonRects[i].contains(x, y)) {
+                return i;
+            }
+        }
+        return POINTER_NONE;
+    }
+
+    // 按在方向键上的手指：按角度分成 8 个扇区，离中心太近时不按任何方向
+    private int dpadMask(float x, float y) {
+        float dx = x - dpadX;
+        float dy = y - dpadY;
+        float deadZone = dpadRadius * deadZoneFraction;
+        if (dx * dx + dy * dy < deadZone * deadZone) {
+            return 0;
+        }
+        double angle = Math.atan2(dy, dx);
+        int sector = (int) Math.round(angle / (Math.PI / 4));
+        return SECTOR_MASKS[(sector + 8) % 8];
+    }
+
+    private void setPressed(int mask, long eventTime) {
+        int changed = mask ^ pressed;
+        if (changed == 0) {
+            return;
+        }
+        pressed = mask;
+        for (int i = 0; i < keys.length; i++) {
+            if ((changed & 1 << i) != 0) {
+                listener.onButton(keys[i], (mask & 1 << i) != 0, eventTime);
+            }
+        }
+        invalidate();
+    }
+}
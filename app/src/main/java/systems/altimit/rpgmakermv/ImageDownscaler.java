@@ -0,0 +1,293 @@
+package systems.altimit.rpgmakermv;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 低内存设备上的图片降采样：img/pictures 和 img/parallaxes 下超过分档尺寸的 PNG
+// 用 BitmapFactory 的 inSampleSize 缩小后重新编码，结果缓存在 cacheDir 中，
+// JS 端通过 getScale 取得缩放比例，用 BaseTexture.resolution 保持原来的逻辑尺寸
+public class ImageDownscaler {
+    private static final String ASSET_ROOT = "www/";
+    private static final String[] FOLDERS = {"img/pictures/", "img/parallaxes/"};
+    private static final String CACHE_DIR = "downscaled";
+    private static final String VERSION_FILE = ".version";
+
+    private final AssetManager assets;
+    private final File cacheDir;
+    private final int maxDimension;
+    // APK 更新后资源可能变化，缓存随之作废
+    private final String versionTag;
+    private volatile boolean cacheChecked;
+
+    // 已缩小的资源及其缩放比例（资源路径 -> 比例）
+    private final ConcurrentHashMap<String, Float> scales = new ConcurrentHashMap<>();
+
+    // 统计
+    private long requests;
+    private long downscaled;
+    private long cacheHits;
+    private long encoded;
+    private long failed;
+    private long originalTextureBytes;
+    private long servedTextureBytes;
+
+    public ImageDownscaler(Context context, int maxDimension) {
+        this.assets = context.getAssets();
+        this.cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        this.maxDimension = maxDimension;
+        this.versionTag = getVersionTag(context);
+    }
+
+    // 分档：configured > 0 直接使用，0 按应用可用堆大小选择，< 0 关闭
+    public static int resolveMaxDimension(Context context, int configured) {
+        if (configured != 0) {
+            return Math.max(configured, 0);
+        }
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) {
+            return 0;
+        }
+        int memoryClass = am.getMemoryClass();
+        if (am.isLowRamDevice() || memoryClass < 192) {
+            return 1024;
+        }
+        if (memoryClass < 256) {
+            return 2048;
+        }
+        return 0;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    // 返回缩小后的图片；不需要处理时返回 null（在 WebView 的 IO 线程上调用）
+    public WebResourceResponse serve(String assetPath) {
+        if (maxDimension <= 0 || !isDownscalable(assetPath)) {
+            return null;
+        }
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream is = assets.open(assetPath, AssetManager.ACCESS_STREAMING)) {
+            BitmapFactory.decodeStream(is, null, bounds);
+        } catch (IOException e) {
+            return null;
+        }
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        int sampleSize = computeSampleSize(width, height, maxDimension);
+        synchronized (this) {
+            requests++;
+        }
+        if (width <= 0 || height <= 0 || sampleSize <= 1) {
+            return null;
+        }
+
+        checkCacheVersion();
+        File cached = new File(cacheDir, cacheKey(assetPath) + "-" + maxDimension + ".png");
+        boolean hit = cached.isFile();
+        if (!hit && !encode(assetPath, sampleSize, cached)) {
+            synchronized (this) {
+                failed++;
+            }
+            return null;
+        }
+
+        InputStream data;
+        try {
+            data = new FileInputStream(cached);
+        } catch (IOException e) {
+            return null;
+        }
+        scales.put(assetPath, 1f / sampleSize);
+        synchronized (this) {
+            downscaled++;
+            if (hit) {
+                cacheHits++;
+            } else {
+                encoded++;
+            }
+            // 纹理按 RGBA8888 上传
+            originalTextureBytes += (long) width * height * 4;
+            servedTextureBytes += (long) (width / sampleSize) * (height / sampleSize) * 4;
+        }
+        return new WebResourceResponse("image/png", null, data);
+    }
+
+    // 本次运行中是否已返回过该资源的缩小版本
+    public boolean isDownscaled(String assetPath) {
+        return scales.containsKey(assetPath);
+    }
+
+    // 图片的缩放比例，未缩小时返回 1（url 为 Bitmap 的相对地址）
+    @JavascriptInterface
+    public float getScale(String url) {
+        if (url == null || scales.isEmpty()) {
+            return 1;
+        }
+        String path = Uri.decode(url);
+        int end = path.indexOf('?');
+        if (end >= 0) {
+            path = path.substring(0, end);
+        }
+        int start = path.indexOf("img/");
+        if (start < 0) {
+            return 1;
+        }
+        Float scale = scales.get(ASSET_ROOT + path.substring(start));
+        return scale != null ? scale : 1;
+    }
+
+    // 降采样统计（JSON）
+    @JavascriptInterface
+    public synchronized String getStats() {
+        return "{\"maxDimension\":" + maxDimension
+                + ",\"requests\":" + requests
+                + ",\"downscaled\":" + downscaled
+                + ",\"cacheHits\":" + cacheHits
+                + ",\"encoded\":" + encoded
+                + ",\"failed\":" + failed
+                + ",\"textureBytesOriginal\":" + originalTextureBytes
+                + ",\"textureBytesServed\":" + servedTextureBytes
+                + ",\"textureBytesSaved\":" + (originalTextureBytes - servedTextureBytes) + "}";
+    }
+
+    // 2 的幂，使长边不超过 maxDimension
+    static int computeSampleSize(int width, int height, int maxDimension) {
+        int sampleSize = 1;
+        int longest = Math.max(width, height);
+        while (longest / sampleSize > maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static boolean isDownscalable(String assetPath) {
+        if (assetPath == null || !assetPath.endsWith(".png")) {
+            return false;
+        }
+        for (String folder : FOLDERS) {
+            if (assetPath.startsWith(ASSET_ROOT + folder)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean encode(String assetPath, int sampleSize, File target) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap;
+        try (InputStream is = assets.open(assetPath, AssetManager.ACCESS_STREAMING)) {
+            bitmap = BitmapFactory.decodeStream(is, null, options);
+        } catch (IOException | OutOfMemoryError e) {
+            return false;
+        }
+        if (bitmap == null) {
+            return false;
+        }
+
+        // 多个 IO 线程可能同时编码同一张图，各自写临时文件再 rename
+        File temp = new File(cacheDir, "." + target.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, fos)) {
+                temp.delete();
+                return false;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return false;
+        } finally {
+            bitmap.recycle();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return target.isFile();
+        }
+        return true;
+    }
+
+    // 第一次使用时检查缓存是否来自当前版本的 APK，否则清空
+    private synchronized void checkCacheVersion() {
+        if (cacheChecked) {
+            return;
+        }
+        cacheChecked = true;
+        File versionFile = new File(cacheDir, VERSION_FILE);
+        String current = null;
+        if (versionFile.isFile()) {
+            try (InputStream is = new FileInputStream(versionFile)) {
+                byte[] data = new byte[(int) versionFile.length()];
+                int read = 0;
+                while (read < data.length) {
+                    int count = is.read(data, read, data.length - read);
+                    if (count < 0) {
+                        break;
+                    }
+                    read += count;
+                }
+                current = new String(data, 0, read, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                current = null;
+            }
+        }
+        if (versionTag.equals(current)) {
+            return;
+        }
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        cacheDir.mkdirs();
+        try (FileOutputStream fos = new FileOutputStream(versionFile)) {
+            fos.write(versionTag.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String getVersionTag(Context context) {
+        try {
+            return String.valueOf(context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            return String.valueOf(BuildConfig.VERSION_CODE);
+        }
+    }
+
+    // 按资源路径生成文件名：APK 中的资源只会随安装包一起变化，而 checkCacheVersion 在
+    // lastUpdateTime 变化时清空整个缓存，所以不必对内容取哈希（那样每次请求都要读完整张图）
+    private static String cacheKey(String assetPath) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(assetPath.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(assetPath.hashCode());
+        }
+    }
+}
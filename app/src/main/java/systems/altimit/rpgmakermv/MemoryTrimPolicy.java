@@ -0,0 +1,117 @@
+package systems.altimit.rpgmakermv;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 内存紧张时各级别释放多少：每个 onTrimMemory 级别对应一个缓存保留比例（0-100）
+// 配置格式 "RUNNING_LOW=50,RUNNING_CRITICAL=0,..."（级别名或数字），来自 BuildConfig.MEMORY_TRIM_POLICY
+// 不依赖 Android，级别数值与 ComponentCallbacks2 一致
+public class MemoryTrimPolicy {
+    public static final int RUNNING_MODERATE = 5;
+    public static final int RUNNING_LOW = 10;
+    public static final int RUNNING_CRITICAL = 15;
+    public static final int UI_HIDDEN = 20;
+    public static final int BACKGROUND = 40;
+    public static final int MODERATE = 60;
+    public static final int COMPLETE = 80;
+
+    private static final String[] NAMES = {
+            "RUNNING_MODERATE", "RUNNING_LOW", "RUNNING_CRITICAL", "UI_HIDDEN", "BACKGROUND", "MODERATE", "COMPLETE"
+    };
+    private static final int[] LEVELS = {
+            RUNNING_MODERATE, RUNNING_LOW, RUNNING_CRITICAL, UI_HIDDEN, BACKGROUND, MODERATE, COMPLETE
+    };
+
+    // 某一级别的处理方式
+    public static final class Plan {
+        public final int level;
+        // 原生缓存（文件内容、预取）和 ImageManager 缓存的保留比例
+        public final int keepPercent;
+
+        Plan(int level, int keepPercent) {
+            this.level = level;
+            this.keepPercent = keepPercent;
+        }
+
+        // 文件元数据、路径解析缓存只在全部释放时清空
+        public boolean clearMetadata() {
+            return keepPercent == 0;
+        }
+
+        // 已播放完的 SE 缓冲区只要需要释放就丢弃
+        public boolean purgeFinishedAudio() {
+            return keepPercent < 100;
+        }
+
+        // 系统音效（playStaticSe）的缓冲区下次播放时会重新加载
+        public boolean dropStaticAudio() {
+            return keepPercent == 0;
+        }
+
+        public long scale(long bytes) {
+            return bytes * keepPercent / 100;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s keep=%d%%", levelName(level), keepPercent);
+        }
+    }
+
+    // 级别 -> 保留比例
+    private final TreeMap<Integer, Integer> keep = new TreeMap<>();
+
+    public MemoryTrimPolicy(String spec) {
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int eq = entry.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Bad trim policy entry: " + entry);
+            }
+            int level = parseLevel(entry.substring(0, eq).trim());
+            int percent = Integer.parseInt(entry.substring(eq + 1).trim());
+            if (percent < 0 || percent > 100) {
+                throw new IllegalArgumentException("Keep percent out of range: " + entry);
+            }
+            keep.put(level, percent);
+        }
+    }
+
+    // 没有配置该级别时，取同一组（前台 < UI_HIDDEN ≤ 后台）中较低的最近一级；都没有时不处理（返回 null）
+    public Plan plan(int level) {
+        Map.Entry<Integer, Integer> entry = keep.floorEntry(level);
+        if (entry == null || (level >= UI_HIDDEN) != (entry.getKey() >= UI_HIDDEN)) {
+            return null;
+        }
+        if (entry.getValue() >= 100) {
+            return null;
+        }
+        return new Plan(level, entry.getValue());
+    }
+
+    static int parseLevel(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equalsIgnoreCase(name)) {
+                return LEVELS[i];
+            }
+        }
+        try {
+            return Integer.parseInt(name);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unknown trim level: " + name);
+        }
+    }
+
+    static String levelName(int level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i] == level) {
+                return NAMES[i];
+            }
+        }
+        return String.valueOf(level);
+    }
+}
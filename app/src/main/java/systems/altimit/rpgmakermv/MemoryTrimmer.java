@@ -0,0 +1,131 @@
+package systems.altimit.rpgmakermv;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// onTrimMemory 的处理：按 MemoryTrimPolicy 收缩原生缓存，并通过包装脚本释放 ImageManager 缓存和 WebAudio 缓冲区
+// 前后各测一次应用进程的 PSS（释放后等一会儿再测，给垃圾回收留时间），结果输出到 logcat（MemoryTrim），注册为 AndroidMemory
+// Debug.getPss() 只覆盖应用进程（原生缓存、预取缓存），图片和音频缓冲区在 WebView 的渲染进程里：
+// 渲染进程的 pid 拿不到（而且是另一个 uid），performance.memory 不开精确模式时 20 分钟才更新一次，
+// 所以 JS 端的效果只按释放的数量记录，不计入 PSS
+public class MemoryTrimmer {
+    private static final String TAG = "MemoryTrim";
+
+    // 释放后等待多久再测应用进程的 PSS
+    private static final long MEASURE_DELAY_MILLIS = 2000;
+    // 前台级别会反复下发，同等或更轻的处理在这段时间内只做一次
+    private static final long REPEAT_MILLIS = 10000;
+
+    private final Player player;
+    private final FileSystemInterface fileSystem;
+    private final AssetPrefetcher prefetcher;
+    private final MemoryTrimPolicy policy;
+    private final ScheduledExecutorService executor;
+
+    private long lastTrimTime;
+    private int lastKeepPercent = 100;
+    private int trims;
+    private volatile String lastResult = "null";
+    // JS 端上一次释放的数量：[图片, 音频]
+    private volatile int[] released = new int[2];
+
+    public MemoryTrimmer(Player player, FileSystemInterface fileSystem, AssetPrefetcher prefetcher,
+                         MemoryTrimPolicy policy) {
+        this.player = player;
+        this.fileSystem = fileSystem;
+        this.prefetcher = prefetcher;
+        this.policy = policy;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MemoryTrim");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // 在主线程调用（Activity.onTrimMemory / onLowMemory）
+    public void trim(int level) {
+        final MemoryTrimPolicy.Plan plan = policy.plan(level);
+        if (plan == null || executor.isShutdown()) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (plan.keepPercent >= lastKeepPercent && now - lastTrimTime < REPEAT_MILLIS) {
+            return;
+        }
+        lastTrimTime = now;
+        lastKeepPercent = plan.keepPercent;
+        trims++;
+        released = new int[2];
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                apply(plan);
+            }
+        });
+    }
+
+    // 停止后台线程，未完成的释放和 PSS 测量直接丢弃（onDestroy 时调用）
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void apply(final MemoryTrimPolicy.Plan plan) {
+        final long appPssBefore = Debug.getPss();
+        fileSystem.trimCaches(plan);
+        if (prefetcher != null) {
+            if (plan.keepPercent == 0) {
+                prefetcher.clear();
+            } else {
+                prefetcher.trimToSize(plan.scale(BuildConfig.PREFETCH_CACHE_SIZE_KB * 1024L));
+            }
+        }
+        player.post(new Runnable() {
+            @Override
+            public void run() {
+                player.evaluateJavascript("if (window.AndroidMemoryTrim) AndroidMemoryTrim.trim("
+                        + plan.keepPercent + "," + plan.purgeFinishedAudio() + "," + plan.dropStaticAudio() + ");");
+            }
+        });
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                report(plan, appPssBefore, Debug.getPss());
+            }
+        }, MEASURE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void report(MemoryTrimPolicy.Plan plan, long before, long after) {
+        int[] counts = released;
+        Log.i(TAG, String.format(Locale.ROOT,
+                "%s: app process PSS %d -> %d KB (%+d KB, renderer not measured), released %d images, %d audio buffers",
+                plan, before, after, after - before, counts[0], counts[1]));
+        TimelineRecorder.get().record("trimMemory", plan + " appPss " + (after - before) + "KB");
+        lastResult = String.format(Locale.ROOT,
+                "{\"level\":%d,\"keepPercent\":%d,\"appPssBeforeKb\":%d,\"appPssAfterKb\":%d,\"images\":%d,\"audio\":%d}",
+                plan.level, plan.keepPercent, before, after, counts[0], counts[1]);
+    }
+
+    // 包装脚本释放完成后回报数量
+    @JavascriptInterface
+    public void onTrimmed(int images, int audio) {
+        released = new int[]{images, audio};
+    }
+
+    // {"trims":次数,"last":{level, keepPercent, appPssBeforeKb, appPssAfterKb, images, audio}}
+    // appPss* 只是应用进程，不含渲染进程里释放的图片和音频
+    @JavascriptInterface
+    public String getStats() {
+        return "{\"trims\":" + trims + ",\"last\":" + lastResult + "}";
+    }
+}
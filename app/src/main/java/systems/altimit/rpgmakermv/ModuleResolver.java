@@ -0,0 +1,262 @@
+package systems.altimit.rpgmakermv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// require() 的模块解析，按 Node.js 的规则：
+// 相对/绝对路径依次尝试 X、X.js、X.json、X/package.json 的 main、X/index.js、X/index.json，
+// 裸模块名从所在目录逐级向上查找 node_modules，找不到时再按相对路径查找
+// 模块 id 是以 / 开头的规范路径（没有 . 和 ..，不会越过根目录），纯 Java 实现
+public class ModuleResolver {
+
+    // 模块文件来源
+    public interface Source {
+        boolean isFile(String id);
+
+        // 读取源码，不存在时返回 null
+        String read(String id);
+    }
+
+    private static final String[] EXTENSIONS = {"", ".js", ".json"};
+    private static final String[] INDEX_FILES = {"/index.js", "/index.json"};
+
+    private final Source source;
+
+    public ModuleResolver(Source source) {
+        this.source = source;
+    }
+
+    // 解析 request，parentDir 是发起 require 的模块所在目录；找不到时返回 null
+    public String resolve(String request, String parentDir) {
+        if (request == null || request.isEmpty()) {
+            return null;
+        }
+        String base = parentDir != null && parentDir.startsWith("/") ? parentDir : "/";
+        if (isPathRequest(request)) {
+            String target = normalize(request.startsWith("/") ? request : base + "/" + request);
+            return resolveFileOrDirectory(target);
+        }
+        for (String dir : nodeModulesPaths(base)) {
+            String id = resolveFileOrDirectory(normalize(dir + "/" + request));
+            if (id != null) {
+                return id;
+            }
+        }
+        // 插件常把 require('a.js') 当作相对路径使用，node_modules 中没有时按相对路径再找一次
+        return resolveFileOrDirectory(normalize(base + "/" + request));
+    }
+
+    static boolean isPathRequest(String request) {
+        return request.startsWith("./") || request.startsWith("../") || request.startsWith("/")
+                || request.equals(".") || request.equals("..");
+    }
+
+    // 规范化路径：合并重复的 /，处理 . 和 ..（到根目录为止）
+    static String normalize(String path) {
+        List<String> parts = new ArrayList<>();
+        for (String part : path.replace('\\', '/').split("/")) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (part.equals("..")) {
+                if (!parts.isEmpty()) {
+                    parts.remove(parts.size() - 1);
+                }
+            } else {
+                parts.add(part);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            sb.append('/').append(part);
+        }
+        return sb.length() > 0 ? sb.toString() : "/";
+    }
+
+    static String dirname(String id) {
+        int slash = id.lastIndexOf('/');
+        return slash > 0 ? id.substring(0, slash) : "/";
+    }
+
+    // 从 dir 逐级向上的 node_modules 目录（跳过 node_modules/node_modules）
+    static List<String> nodeModulesPaths(String dir) {
+        List<String> paths = new ArrayList<>();
+        String current = normalize(dir);
+        while (true) {
+            if (!current.endsWith("/node_modules")) {
+                paths.add(current.equals("/") ? "/node_modules" : current + "/node_modules");
+            }
+            if (current.equals("/")) {
+                break;
+            }
+            current = dirname(current);
+        }
+        return paths;
+    }
+
+    private String resolveFileOrDirectory(String target) {
+        String id = resolveFile(target);
+        if (id != null) {
+            return id;
+        }
+        return resolveDirectory(target);
+    }
+
+    private String resolveFile(String target) {
+        if (target.equals("/")) {
+            return null;
+        }
+        for (String ext : EXTENSIONS) {
+            if (source.isFile(target + ext)) {
+                return target + ext;
+            }
+        }
+        return null;
+    }
+
+    private String resolveDirectory(String target) {
+        String dir = target.equals("/") ? "" : target;
+        String pkg = source.isFile(dir + "/package.json") ? source.read(dir + "/package.json") : null;
+        if (pkg != null) {
+            // package.json 无效时按没有 main 处理
+            String main = readMain(pkg);
+            if (main != null && !main.isEmpty()) {
+                String mainPath = normalize(dir + "/" + main);
+                String id = resolveFile(mainPath);
+                if (id == null) {
+                    id = resolveIndex(mainPath.equals("/") ? "" : mainPath);
+                }
+                if (id != null) {
+                    return id;
+                }
+            }
+        }
+        return resolveIndex(dir);
+    }
+
+    private String resolveIndex(String dir) {
+        for (String index : INDEX_FILES) {
+            if (source.isFile(dir + index)) {
+                return dir + index;
+            }
+        }
+        return null;
+    }
+
+    // 取 package.json 顶层的 "main" 字符串，没有或格式无效时返回 null
+    // 只扫描顶层键值，其余的值整体跳过（不依赖 org.json，在普通 JVM 上也能运行）
+    static String readMain(String json) {
+        JsonScanner scanner = new JsonScanner(json);
+        try {
+            if (scanner.next() != '{') {
+                return null;
+            }
+            while (true) {
+                char c = scanner.next();
+                if (c == '}') {
+                    return null;
+                }
+                if (c != '"') {
+                    return null;
+                }
+                String key = scanner.string();
+                if (scanner.next() != ':') {
+                    return null;
+                }
+                if (key.equals("main")) {
+                    return scanner.next() == '"' ? scanner.string() : null;
+                }
+                scanner.skipValue();
+                c = scanner.next();
+                if (c != ',') {
+                    return null;
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class JsonScanner {
+        private final String s;
+        private int pos;
+
+        JsonScanner(String s) {
+            this.s = s;
+        }
+
+        // 跳过空白，返回并消耗下一个字符
+        char next() {
+            while (Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+            return s.charAt(pos++);
+        }
+
+        // 读取字符串的其余部分（开头的引号已消耗）
+        String string() {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                c = s.charAt(pos++);
+                switch (c) {
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        sb.append(c);
+                        break;
+                }
+            }
+        }
+
+        // 跳过一个值：字符串、对象、数组（按括号深度）或字面量
+        void skipValue() {
+            char c = next();
+            if (c == '"') {
+                string();
+                return;
+            }
+            if (c != '{' && c != '[') {
+                while (pos < s.length() && ",}]".indexOf(s.charAt(pos)) < 0) {
+                    pos++;
+                }
+                return;
+            }
+            int depth = 1;
+            while (depth > 0) {
+                c = s.charAt(pos++);
+                if (c == '"') {
+                    string();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+        }
+    }
+}
@@ -38,5 +38,17 @@ public interface Player {
     void resumeTimers();
     void onShow();
     void onDestroy();
+    void onTrimMemory(int level);
+    void setRendererPriority(boolean important);
+    void setRendererGoneListener(RendererGoneListener listener);
+
+    /**
+     * Called when the renderer process has died; the player can no longer be used.
+     */
+    interface RendererGoneListener {
+
+        void onRendererGone(boolean crashed, int priorityAtExit);
+
+    }
 
 }
\ No newline at end of file
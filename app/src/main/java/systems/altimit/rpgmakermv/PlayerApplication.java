@@ -0,0 +1,56 @@
+package systems.altimit.rpgmakermv;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebSettings;
+
+// 进程启动时预热：后台线程加载 WebView 提供者，准备 AndroidFS 目录和包装脚本
+// WebView 本身不在这里创建：它只能在主线程上构造，提前创建会挡住 Activity 的首帧；
+// WebPlayerActivity 在首帧之后再创建播放器，此时提供者已经加载完毕
+public class PlayerApplication extends Application {
+    private static final String TAG = "PlayerApplication";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        TimelineRecorder timeline = TimelineRecorder.get();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            timeline.markAgo(TimelineRecorder.PROCESS_START,
+                    SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime());
+        } else {
+            timeline.mark(TimelineRecorder.PROCESS_START);
+        }
+        timeline.mark(TimelineRecorder.APPLICATION_CREATE);
+
+        Thread prewarm = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                warmUpWebView();
+                // 首次获取会创建目录
+                getExternalFilesDir(null);
+                getFilesDir();
+                getCacheDir();
+                getDir("database", Context.MODE_PRIVATE);
+                WebPlayerView.getWrapperScript(PlayerApplication.this);
+                TimelineRecorder.get().mark(TimelineRecorder.PREWARM_DONE);
+            }
+        }, "PlayerPrewarm");
+        prewarm.setDaemon(true);
+        prewarm.start();
+    }
+
+    // getDefaultUserAgent 会加载 WebView 提供者（APK、类和原生库），不创建 WebView，可以在任意线程调用
+    private void warmUpWebView() {
+        try {
+            WebSettings.getDefaultUserAgent(this);
+            TimelineRecorder.get().mark(TimelineRecorder.WEBVIEW_PROVIDER_LOADED);
+        } catch (RuntimeException e) {
+            // 提供者正在更新或未安装：交给 WebPlayerView 创建时再报错
+            Log.w(TAG, "WebView provider warm-up failed", e);
+        }
+    }
+}
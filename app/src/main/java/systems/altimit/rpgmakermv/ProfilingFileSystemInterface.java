@@ -0,0 +1,444 @@
+package systems.altimit.rpgmakermv;
+
+import android.content.Context;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// 开启 BRIDGE_PROFILING 或 BRIDGE_TRACE 时代替 FileSystemInterface 注册为 AndroidFS：
+// 每个桥方法记录耗时直方图、调用次数和参数/返回值大小，并定期输出到 logcat；
+// BRIDGE_TRACE 时还把每次调用写入二进制跟踪文件（BridgeTrace），可用 tools/trace-replay 在 JVM 上回放
+// 异步方法只记录投递耗时：后台线程上的实际工作直接交给 FileSystemBackend，不会再经过这里的同步方法被重复计入
+// 都关闭时注册的是 FileSystemInterface 本身，没有任何额外开销
+public class ProfilingFileSystemInterface extends FileSystemInterface {
+    private static final String TAG = "BridgeProfiler";
+    // logcat 摘要的输出间隔
+    private static final long SUMMARY_INTERVAL_SECONDS = 30;
+    // 跟踪文件目录（在缓存目录下，不会混进游戏的应用目录）
+    private static final String TRACE_DIR = "androidfs-traces";
+
+    private final BridgeProfiler profiler = new BridgeProfiler();
+    private final BridgeProfiler.Method readFileSyncStats = profiler.register("readFileSync");
+    private final BridgeProfiler.Method writeFileSyncStats = profiler.register("writeFileSync");
+    private final BridgeProfiler.Method writeBinarySyncStats = profiler.register("writeBinarySync");
+    private final BridgeProfiler.Method existsSyncStats = profiler.register("existsSync");
+    private final BridgeProfiler.Method readdirSyncStats = profiler.register("readdirSync");
+    private final BridgeProfiler.Method mkdirSyncStats = profiler.register("mkdirSync");
+    private final BridgeProfiler.Method unlinkSyncStats = profiler.register("unlinkSync");
+    private final BridgeProfiler.Method rmdirSyncStats = profiler.register("rmdirSync");
+    private final BridgeProfiler.Method renameSyncStats = profiler.register("renameSync");
+    private final BridgeProfiler.Method appendFileSyncStats = profiler.register("appendFileSync");
+    private final BridgeProfiler.Method copyFileSyncStats = profiler.register("copyFileSync");
+    private final BridgeProfiler.Method truncateSyncStats = profiler.register("truncateSync");
+    private final BridgeProfiler.Method statSyncStats = profiler.register("statSync");
+    private final BridgeProfiler.Method readFileAsyncStats = profiler.register("readFileAsync");
+    private final BridgeProfiler.Method writeFileAsyncStats = profiler.register("writeFileAsync");
+    private final BridgeProfiler.Method mkdirAsyncStats = profiler.register("mkdirAsync");
+    private final BridgeProfiler.Method unlinkAsyncStats = profiler.register("unlinkAsync");
+    private final BridgeProfiler.Method rmdirAsyncStats = profiler.register("rmdirAsync");
+    private final BridgeProfiler.Method statAsyncStats = profiler.register("statAsync");
+    private final BridgeProfiler.Method readdirAsyncStats = profiler.register("readdirAsync");
+    private final BridgeProfiler.Method openSyncStats = profiler.register("openSync");
+    private final BridgeProfiler.Method readSyncStats = profiler.register("readSync");
+    private final BridgeProfiler.Method readAsyncStats = profiler.register("readAsync");
+    private final BridgeProfiler.Method writeSyncStats = profiler.register("writeSync");
+    private final BridgeProfiler.Method closeSyncStats = profiler.register("closeSync");
+    private final BridgeProfiler.Method fstatSyncStats = profiler.register("fstatSync");
+    private final BridgeProfiler.Method takeAsyncResultStats = profiler.register("takeAsyncResult");
+    private final BridgeProfiler.Method batchSyncStats = profiler.register("batchSync");
+    private final BridgeProfiler.Method resolveModuleStats = profiler.register("resolveModule");
+    // 未开启 BRIDGE_TRACE 或创建失败时为 null
+    private final BridgeTrace.Writer trace;
+    // 未开启 BRIDGE_PROFILING 时为 null
+    private final ScheduledExecutorService scheduler;
+
+    public ProfilingFileSystemInterface(Context context, WebView webView) {
+        super(context, webView);
+        this.trace = BuildConfig.BRIDGE_TRACE ? openTrace(context) : null;
+        if (!BuildConfig.BRIDGE_PROFILING) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AndroidFS-profiler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                logSummary();
+            }
+        }, SUMMARY_INTERVAL_SECONDS, SUMMARY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static BridgeTrace.Writer openTrace(Context context) {
+        File cacheDir = context.getExternalCacheDir();
+        if (cacheDir == null) {
+            cacheDir = context.getCacheDir();
+        }
+        File dir = new File(cacheDir, TRACE_DIR);
+        dir.mkdirs();
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".afst";
+        File file = new File(dir, name);
+        try {
+            BridgeTrace.Writer writer = new BridgeTrace.Writer(new FileOutputStream(file), System.nanoTime());
+            Log.i(TAG, "Recording AndroidFS trace to " + file.getPath());
+            return writer;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // 暂停时把跟踪文件也写出去，进程随后被杀也不会丢失
+    @Override
+    public void flushWrites() {
+        super.flushWrites();
+        if (trace != null) {
+            trace.flush();
+        }
+    }
+
+    // 停止摘要线程（最后输出一次摘要）并关闭跟踪文件
+    @Override
+    public void close() {
+        super.close();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            logSummary();
+        }
+        if (trace != null) {
+            try {
+                trace.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    protected String getBridgeStats() {
+        return profiler.toJson();
+    }
+
+    // 清空统计（例如只想测量某一段游戏过程时）
+    @JavascriptInterface
+    public void resetStats() {
+        profiler.reset();
+    }
+
+    private void logSummary() {
+        for (String line : profiler.summary()) {
+            Log.i(TAG, line);
+        }
+    }
+
+    // nanos < 0 表示嵌套调用（例如 batchSync 内部的读取），不单独记录
+    private void trace(BridgeProfiler.Method method, long start, long nanos, String path, String path2,
+                       long arg, long arg2, long size, long result) {
+        if (trace != null && nanos >= 0) {
+            trace.record(method.name, start, nanos, path, path2, arg, arg2, size, result);
+        }
+    }
+
+    private static int length(String s) {
+        return s != null ? s.length() : 0;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String readFileSync(String path, String encoding) {
+        long start = profiler.begin();
+        String result = super.readFileSync(path, encoding);
+        long nanos = profiler.end(readFileSyncStats, start, length(path) + length(encoding), length(result));
+        trace(readFileSyncStats, start, nanos, path, encoding, 0, 0, length(result), result != null ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean writeFileSync(String path, String data) {
+        long start = profiler.begin();
+        boolean result = super.writeFileSync(path, data);
+        long nanos = profiler.end(writeFileSyncStats, start, length(path) + length(data), 0);
+        trace(writeFileSyncStats, start, nanos, path, null, 0, 0, length(data), result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean writeBinarySync(String path, String data) {
+        long start = profiler.begin();
+        boolean result = super.writeBinarySync(path, data);
+        long nanos = profiler.end(writeBinarySyncStats, start, length(path) + length(data), 0);
+        trace(writeBinarySyncStats, start, nanos, path, null, 0, 0, length(data), result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean existsSync(String path) {
+        long start = profiler.begin();
+        boolean result = super.existsSync(path);
+        long nanos = profiler.end(existsSyncStats, start, length(path), 0);
+        trace(existsSyncStats, start, nanos, path, null, 0, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String readdirSync(String path) {
+        long start = profiler.begin();
+        String result = super.readdirSync(path);
+        long nanos = profiler.end(readdirSyncStats, start, length(path), length(result));
+        trace(readdirSyncStats, start, nanos, path, null, 0, 0, length(result), result != null ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean mkdirSync(String path) {
+        long start = profiler.begin();
+        boolean result = super.mkdirSync(path);
+        long nanos = profiler.end(mkdirSyncStats, start, length(path), 0);
+        trace(mkdirSyncStats, start, nanos, path, null, 0, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean unlinkSync(String path) {
+        long start = profiler.begin();
+        boolean result = super.unlinkSync(path);
+        long nanos = profiler.end(unlinkSyncStats, start, length(path), 0);
+        trace(unlinkSyncStats, start, nanos, path, null, 0, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean rmdirSync(String path) {
+        long start = profiler.begin();
+        boolean result = super.rmdirSync(path);
+        long nanos = profiler.end(rmdirSyncStats, start, length(path), 0);
+        trace(rmdirSyncStats, start, nanos, path, null, 0, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean renameSync(String oldPath, String newPath) {
+        long start = profiler.begin();
+        boolean result = super.renameSync(oldPath, newPath);
+        long nanos = profiler.end(renameSyncStats, start, length(oldPath) + length(newPath), 0);
+        trace(renameSyncStats, start, nanos, oldPath, newPath, 0, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean appendFileSync(String path, String data) {
+        long start = profiler.begin();
+        boolean result = super.appendFileSync(path, data);
+        long nanos = profiler.end(appendFileSyncStats, start, length(path) + length(data), 0);
+        trace(appendFileSyncStats, start, nanos, path, null, 0, 0, length(data), result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean copyFileSync(String srcPath, String destPath) {
+        long start = profiler.begin();
+        boolean result = super.copyFileSync(srcPath, destPath);
+        long nanos = profiler.end(copyFileSyncStats, start, length(srcPath) + length(destPath), 0);
+        trace(copyFileSyncStats, start, nanos, srcPath, destPath, 0, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean truncateSync(String path, double length) {
+        long start = profiler.begin();
+        boolean result = super.truncateSync(path, length);
+        long nanos = profiler.end(truncateSyncStats, start, length(path), 0);
+        trace(truncateSyncStats, start, nanos, path, null, (long) length, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String statSync(String path) {
+        long start = profiler.begin();
+        String result = super.statSync(path);
+        long nanos = profiler.end(statSyncStats, start, length(path), length(result));
+        trace(statSyncStats, start, nanos, path, null, 0, 0, length(result), result != null ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public void readFileAsync(final int id, final String path, final String encoding) {
+        long start = profiler.begin();
+        super.readFileAsync(id, path, encoding);
+        long nanos = profiler.end(readFileAsyncStats, start, length(path) + length(encoding), 0);
+        trace(readFileAsyncStats, start, nanos, path, encoding, id, 0, 0, 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public void writeFileAsync(final int id, final String path, final String data) {
+        long start = profiler.begin();
+        super.writeFileAsync(id, path, data);
+        long nanos = profiler.end(writeFileAsyncStats, start, length(path) + length(data), 0);
+        trace(writeFileAsyncStats, start, nanos, path, null, id, 0, length(data), 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public void mkdirAsync(final int id, final String path) {
+        long start = profiler.begin();
+        super.mkdirAsync(id, path);
+        long nanos = profiler.end(mkdirAsyncStats, start, length(path), 0);
+        trace(mkdirAsyncStats, start, nanos, path, null, id, 0, 0, 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public void unlinkAsync(final int id, final String path) {
+        long start = profiler.begin();
+        super.unlinkAsync(id, path);
+        long nanos = profiler.end(unlinkAsyncStats, start, length(path), 0);
+        trace(unlinkAsyncStats, start, nanos, path, null, id, 0, 0, 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public void rmdirAsync(final int id, final String path) {
+        long start = profiler.begin();
+        super.rmdirAsync(id, path);
+        long nanos = profiler.end(rmdirAsyncStats, start, length(path), 0);
+        trace(rmdirAsyncStats, start, nanos, path, null, id, 0, 0, 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public void statAsync(final int id, final String path) {
+        long start = profiler.begin();
+        super.statAsync(id, path);
+        long nanos = profiler.end(statAsyncStats, start, length(path), 0);
+        trace(statAsyncStats, start, nanos, path, null, id, 0, 0, 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public void readdirAsync(final int id, final String path) {
+        long start = profiler.begin();
+        super.readdirAsync(id, path);
+        long nanos = profiler.end(readdirAsyncStats, start, length(path), 0);
+        trace(readdirAsyncStats, start, nanos, path, null, id, 0, 0, 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public int openSync(String path, String flags) {
+        long start = profiler.begin();
+        int result = super.openSync(path, flags);
+        long nanos = profiler.end(openSyncStats, start, length(path) + length(flags), 0);
+        trace(openSyncStats, start, nanos, path, flags, 0, 0, 0, result);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String readSync(int fd, int length, double position) {
+        long start = profiler.begin();
+        String result = super.readSync(fd, length, position);
+        long nanos = profiler.end(readSyncStats, start, 0, length(result));
+        trace(readSyncStats, start, nanos, null, null, fd, (long) position, length, result != null ? result.length() : -1);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public void readAsync(final int id, final int fd, final int length, final double position) {
+        long start = profiler.begin();
+        super.readAsync(id, fd, length, position);
+        long nanos = profiler.end(readAsyncStats, start, 0, 0);
+        trace(readAsyncStats, start, nanos, null, null, fd, (long) position, length, 0);
+    }
+
+    @Override
+    @JavascriptInterface
+    public int writeSync(int fd, String data, double position, String encoding) {
+        long start = profiler.begin();
+        int result = super.writeSync(fd, data, position, encoding);
+        long nanos = profiler.end(writeSyncStats, start, length(data) + length(encoding), 0);
+        trace(writeSyncStats, start, nanos, null, encoding, fd, (long) position, length(data), result);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public boolean closeSync(int fd) {
+        long start = profiler.begin();
+        boolean result = super.closeSync(fd);
+        long nanos = profiler.end(closeSyncStats, start, 0, 0);
+        trace(closeSyncStats, start, nanos, null, null, fd, 0, 0, result ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String fstatSync(int fd) {
+        long start = profiler.begin();
+        String result = super.fstatSync(fd);
+        long nanos = profiler.end(fstatSyncStats, start, 0, length(result));
+        trace(fstatSyncStats, start, nanos, null, null, fd, 0, length(result), result != null ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String takeAsyncResult(int id) {
+        long start = profiler.begin();
+        String result = super.takeAsyncResult(id);
+        long nanos = profiler.end(takeAsyncResultStats, start, 0, length(result));
+        trace(takeAsyncResultStats, start, nanos, null, null, id, 0, length(result), result != null ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String batchSync(String ops) {
+        long start = profiler.begin();
+        String result = super.batchSync(ops);
+        long nanos = profiler.end(batchSyncStats, start, length(ops), length(result));
+        trace(batchSyncStats, start, nanos, ops, null, 0, 0, length(result), 0);
+        return result;
+    }
+
+    @Override
+    @JavascriptInterface
+    public String resolveModule(String request, String parentDir) {
+        long start = profiler.begin();
+        String result = super.resolveModule(request, parentDir);
+        long nanos = profiler.end(resolveModuleStats, start, length(request) + length(parentDir), length(result));
+        trace(resolveModuleStats, start, nanos, request, parentDir, 0, 0, length(result), result != null ? 1 : 0);
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+package systems.altimit.rpgmakermv;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import java.util.Locale;
+
+// WebView 渲染进程退出后的恢复统计：崩溃和被系统回收的次数，恢复耗时（渲染进程退出 → 新页面进入 Scene_Boot）
+// 累计数保存在 SharedPreferences，输出到 logcat（RendererRecovery），注册为 AndroidRecovery
+public class RendererRecovery {
+    private static final String TAG = "RendererRecovery";
+    private static final String PREFS = "renderer";
+    private static final String PREF_CRASHES = "crashes";
+    private static final String PREF_KILLS = "kills";
+    private static final String PREF_RECOVERIES = "recoveries";
+    private static final String PREF_RECOVER_MILLIS = "recoverMillis";
+    private static final String PREF_LAST_RECOVER_MILLIS = "lastRecoverMillis";
+
+    private final SharedPreferences prefs;
+    // 渲染进程退出的时刻（elapsedRealtime），0 表示没有进行中的恢复
+    private long goneTime;
+
+    public RendererRecovery(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    // crashed 为 false 表示渲染进程被系统回收（内存不足）
+    public synchronized void onGone(boolean crashed, int priorityAtExit) {
+        goneTime = SystemClock.elapsedRealtime();
+        String key = crashed ? PREF_CRASHES : PREF_KILLS;
+        prefs.edit().putInt(key, prefs.getInt(key, 0) + 1).apply();
+        Log.w(TAG, String.format(Locale.ROOT, "Renderer %s (priority at exit %d), rebuilding player; %d crashes, %d kills so far",
+                crashed ? "crashed" : "was killed", priorityAtExit, prefs.getInt(PREF_CRASHES, 0), prefs.getInt(PREF_KILLS, 0)));
+        TimelineRecorder.get().record("renderer.gone", crashed ? "crash" : "kill");
+    }
+
+    // 包装脚本在 Scene_Boot 开始时调用
+    @JavascriptInterface
+    public synchronized void onSceneBoot() {
+        if (goneTime == 0) {
+            return;
+        }
+        long millis = SystemClock.elapsedRealtime() - goneTime;
+        goneTime = 0;
+        int recoveries = prefs.getInt(PREF_RECOVERIES, 0) + 1;
+        long total = prefs.getLong(PREF_RECOVER_MILLIS, 0) + millis;
+        prefs.edit()
+                .putInt(PREF_RECOVERIES, recoveries)
+                .putLong(PREF_RECOVER_MILLIS, total)
+                .putLong(PREF_LAST_RECOVER_MILLIS, millis)
+                .apply();
+        Log.i(TAG, String.format(Locale.ROOT, "Recovered in %d ms (%d recoveries, mean %d ms)",
+                millis, recoveries, total / recoveries));
+        TimelineRecorder.get().record("renderer.recovered", millis + "ms");
+    }
+
+    // {"crashes":..,"kills":..,"recoveries":..,"lastRecoverMillis":..,"meanRecoverMillis":..}
+    @JavascriptInterface
+    public String getStats() {
+        int recoveries = prefs.getInt(PREF_RECOVERIES, 0);
+        return String.format(Locale.ROOT,
+                "{\"crashes\":%d,\"kills\":%d,\"recoveries\":%d,\"lastRecoverMillis\":%d,\"meanRecoverMillis\":%d}",
+                prefs.getInt(PREF_CRASHES, 0), prefs.getInt(PREF_KILLS, 0), recoveries,
+                prefs.getLong(PREF_LAST_RECOVER_MILLIS, 0),
+                recoveries > 0 ? prefs.getLong(PREF_RECOVER_MILLIS, 0) / recoveries : 0);
+    }
+}
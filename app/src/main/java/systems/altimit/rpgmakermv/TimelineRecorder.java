@@ -0,0 +1,196 @@
+package systems.altimit.rpgmakermv;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// 启动与场景切换的时间线：记录事件名和单调时间戳，会话结束时导出
+// 纯 Java 实现（时钟可替换），关闭时 record 只做一次布尔判断
+// 启动阶段（mark）不受开关影响：每个阶段只记录第一次，到达 Scene_Boot 时可取得汇总
+public final class TimelineRecorder {
+
+    // 启动阶段：进程启动 → Application → Activity → 首帧 → 创建播放器 → 首次页面提交 → Scene_Boot
+    public static final String PROCESS_START = "processStart";
+    public static final String APPLICATION_CREATE = "applicationCreate";
+    public static final String WEBVIEW_PROVIDER_LOADED = "webViewProviderLoaded";
+    public static final String PREWARM_DONE = "prewarmDone";
+    public static final String ACTIVITY_CREATE = "activityCreate";
+    public static final String FIRST_FRAME = "firstFrame";
+    public static final String PLAYER_CREATED = "playerCreated";
+    public static final String FIRST_PAGE_COMMIT = "firstPageCommit";
+    public static final String SCENE_BOOT = "sceneBoot";
+
+    // 单调时钟（纳秒）
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    // 默认容量：启动阶段加上几百次场景切换足够
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final TimelineRecorder instance =
+            new TimelineRecorder(BuildConfig.TIMELINE_TRACE, DEFAULT_CAPACITY, SYSTEM_CLOCK);
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final long origin;
+    private final long[] times;
+    private final String[] names;
+    private final String[] details;
+    private int count;
+    // 超出容量后丢弃的事件数（保留最早的事件）
+    private int dropped;
+    // 启动阶段 -> 相对 origin 的纳秒数
+    private final LinkedHashMap<String, Long> marks = new LinkedHashMap<>();
+
+    public TimelineRecorder(boolean enabled, int capacity, Clock clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.origin = clock.nanoTime();
+        int size = enabled ? capacity : 0;
+        this.times = new long[size];
+        this.names = new String[size];
+        this.details = new String[size];
+    }
+
+    // 进程内共用的时间线（由 TIMELINE_TRACE 开关）
+    public static TimelineRecorder get() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(String name) {
+        if (enabled) {
+            add(name, null);
+        }
+    }
+
+    public void record(String name, String detail) {
+        if (enabled) {
+            add(name, detail);
+        }
+    }
+
+    // 记录启动阶段，同一阶段只记录第一次；返回是否为第一次
+    public boolean mark(String name) {
+        return markAt(name, clock.nanoTime() - origin);
+    }
+
+    // 记录 millisAgo 毫秒之前发生的阶段（如进程启动，由调用方换算）
+    public boolean markAgo(String name, long millisAgo) {
+        return markAt(name, clock.nanoTime() - origin - millisAgo * 1000000L);
+    }
+
+    private synchronized boolean markAt(String name, long time) {
+        if (marks.containsKey(name)) {
+            return false;
+        }
+        marks.put(name, time);
+        if (enabled) {
+            addAt(time, name, null);
+        }
+        return true;
+    }
+
+    // 各启动阶段相对进程启动的毫秒数（没有进程启动时相对第一个阶段），如 {"processStart":0,"applicationCreate":85}
+    public synchronized String startupJson() {
+        StringBuilder sb = new StringBuilder("{");
+        Long start = marks.get(PROCESS_START);
+        long base = start != null ? start : marks.isEmpty() ? 0 : marks.values().iterator().next();
+        for (Map.Entry<String, Long> entry : marks.entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            appendString(sb, entry.getKey());
+            sb.append(':').append((entry.getValue() - base) / 1000000L);
+        }
+        return sb.append('}').toString();
+    }
+
+    private synchronized void add(String name, String detail) {
+        addAt(clock.nanoTime() - origin, name, detail);
+    }
+
+    private void addAt(long time, String name, String detail) {
+        if (count == times.length) {
+            dropped++;
+            return;
+        }
+        times[count] = time;
+        names[count] = name;
+        details[count] = detail;
+        count++;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        count = 0;
+        dropped = 0;
+    }
+
+    // 每行一个事件：相对开始的毫秒数、距上一事件的毫秒数、事件名
+    public synchronized String toText() {
+        StringBuilder sb = new StringBuilder();
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            sb.append(String.format(Locale.ROOT, "%10.3f ms  +%9.3f ms  ", times[i] / 1e6, (times[i] - previous) / 1e6))
+                    .append(names[i]);
+            if (details[i] != null) {
+                sb.append(' ').append(details[i]);
+            }
+            sb.append('\n');
+            previous = times[i];
+        }
+        if (dropped > 0) {
+            sb.append("(").append(dropped).append(" events dropped)\n");
+        }
+        return sb.toString();
+    }
+
+    // {"events":[{"t":毫秒,"name":..,"detail":..}],"dropped":n}
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{\"events\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"t\":").append(String.format(Locale.ROOT, "%.3f", times[i] / 1e6))
+                    .append(",\"name\":");
+            appendString(sb, names[i]);
+            if (details[i] != null) {
+                sb.append(",\"detail\":");
+                appendString(sb, details[i]);
+            }
+            sb.append('}');
+        }
+        return sb.append("],\"dropped\":").append(dropped).append('}').toString();
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
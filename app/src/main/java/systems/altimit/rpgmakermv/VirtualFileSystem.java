@@ -0,0 +1,305 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+// AndroidFS 的分层虚拟文件系统，挂载点按优先级从高到低：
+//   应用目录（可写）> 补丁目录（只读，patches/ 下每个子目录一层，名字靠后的优先）> APK 中的 www/（只读）
+// 读取返回第一个包含该路径的层；写入只落在应用目录，修改下层文件前先复制上来
+// 虚拟路径为以 / 开头的规范路径（根目录为 ""），用户路径到应用目录文件的解析结果带缓存
+// APK 中的资源通过 Assets 访问（Android 上为 ApkAssets），本身不依赖 Android
+public class VirtualFileSystem {
+    // 补丁目录，与应用目录同级（Android/data/<包名>/patches/<补丁名>/...）
+    static final String PATCH_DIR = "patches";
+    private static final String ASSET_ROOT = "www";
+    // openSync 打开 assets 中的文件时先解压到缓存目录
+    static final String EXTRACT_DIR = "vfs-assets";
+    private static final int PATH_CACHE_SIZE = 1024;
+    private static final int MAX_NODES = 4096;
+
+    // 下层（补丁或 assets）中的文件或目录
+    public static final class Node {
+        public final boolean isDirectory;
+        public final long size;
+        public final long mtime;
+        // 补丁层为真实文件，assets 层为 null
+        public final File file;
+        // assets 层的路径（www/...），补丁层为 null
+        public final String assetPath;
+
+        Node(boolean isDirectory, long size, long mtime, File file, String assetPath) {
+            this.isDirectory = isDirectory;
+            this.size = size;
+            this.mtime = mtime;
+            this.file = file;
+            this.assetPath = assetPath;
+        }
+    }
+
+    // 只读的资源层，路径为 www/... 形式
+    public interface Assets {
+        // 目录内容；不存在或不是目录时返回空数组
+        String[] list(String dir) throws IOException;
+
+        InputStream open(String path) throws IOException;
+
+        long size(String path);
+    }
+
+    // 没有资源层（例如 JVM 上回放跟踪）
+    public static final Assets NO_ASSETS = new Assets() {
+        @Override
+        public String[] list(String dir) {
+            return new String[0];
+        }
+
+        @Override
+        public InputStream open(String path) throws IOException {
+            throw new FileNotFoundException(path);
+        }
+
+        @Override
+        public long size(String path) {
+            return 0;
+        }
+    };
+
+    // 下层不存在时的缓存占位
+    private static final Node MISSING = new Node(false, 0, 0, null, null);
+
+    private final Assets assets;
+    private final File baseDir;
+    private final String baseDirPath;
+    private final List<File> patchDirs;
+    private final File extractDir;
+    // assets 的修改时间取 APK 的更新时间
+    private final long assetTime;
+
+    // 用户路径 -> 应用目录下的规范文件（避免每次调用都 getCanonicalPath）
+    private final Map<String, File> pathCache = new LinkedHashMap<String, File>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+            return size() > PATH_CACHE_SIZE;
+        }
+    };
+    // 下层在运行期间不会变化，查找结果可以一直缓存
+    private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> assetDirs = new ConcurrentHashMap<>();
+
+    // assetTime 为资源的修改时间（APK 的更新时间），extractDir 为 assets 文件的解压目录
+    public VirtualFileSystem(File baseDir, String baseDirPath, Assets assets, long assetTime, File extractDir) {
+        this.assets = assets;
+        this.baseDir = baseDir;
+        this.baseDirPath = baseDirPath;
+        this.patchDirs = findPatchDirs(new File(baseDir.getParentFile(), PATCH_DIR));
+        this.extractDir = extractDir;
+        this.assetTime = assetTime;
+    }
+
+    // 补丁目录按名字倒序，名字靠后的补丁覆盖靠前的
+    private static List<File> findPatchDirs(File root) {
+        File[] children = root.listFiles();
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        List<File> dirs = new ArrayList<>();
+        for (File child : children) {
+            if (child.isDirectory()) {
+                try {
+                    dirs.add(child.getCanonicalFile());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        Collections.sort(dirs, Collections.<File>reverseOrder());
+        return dirs;
+    }
+
+    public boolean hasPatches() {
+        return !patchDirs.isEmpty();
+    }
+
+    // 用户路径对应的应用目录文件（规范路径，越界时为应用目录本身）
+    public File resolve(String path) {
+        synchronized (pathCache) {
+            File file = pathCache.get(path);
+            if (file != null) {
+                return file;
+            }
+        }
+        File file = FileSystemCore.resolveSafe(baseDir, baseDirPath, path);
+        synchronized (pathCache) {
+            pathCache.put(path, file);
+        }
+        return file;
+    }
+
+    // 应用目录文件对应的虚拟路径
+    public String virtualPath(File appFile) {
+        return appFile.getPath().substring(baseDirPath.length());
+    }
+
+    // 内存紧张时清空路径和下层查找缓存，之后按需重建
+    public void clearCaches() {
+        synchronized (pathCache) {
+            pathCache.clear();
+        }
+        nodes.clear();
+    }
+
+    // 在下层中查找，都没有时返回 null
+    public Node lookup(File appFile) {
+        String path = virtualPath(appFile);
+        Node node = nodes.get(path);
+        if (node == null) {
+            node = find(path);
+            if (nodes.size() >= MAX_NODES) {
+                nodes.clear();
+            }
+            nodes.put(path, node);
+        }
+        return node != MISSING ? node : null;
+    }
+
+    private Node find(String path) {
+        for (File patchDir : patchDirs) {
+            File file = path.isEmpty() ? patchDir : new File(patchDir, path.substring(1));
+            if (file.exists()) {
+                boolean isDirectory = file.isDirectory();
+                return new Node(isDirectory, isDirectory ? 0 : file.length(), file.lastModified(), file, null);
+            }
+        }
+        String assetPath = ASSET_ROOT + path;
+        if (path.isEmpty()) {
+            return listAssetDir(assetPath).isEmpty() ? MISSING : new Node(true, 0, assetTime, null, assetPath);
+        }
+        int slash = path.lastIndexOf('/');
+        if (!listAssetDir(ASSET_ROOT + path.substring(0, slash)).contains(path.substring(slash + 1))) {
+            return MISSING;
+        }
+        // list() 同时返回文件和子目录，能列出内容的是目录
+        if (!listAssetDir(assetPath).isEmpty()) {
+            return new Node(true, 0, assetTime, null, assetPath);
+        }
+        return new Node(false, assets.size(assetPath), assetTime, null, assetPath);
+    }
+
+    // 下层目录内容的并集；没有任何一层是目录时返回 null
+    public Set<String> listLower(File appFile) {
+        Node node = lookup(appFile);
+        if (node == null || !node.isDirectory) {
+            return null;
+        }
+        String path = virtualPath(appFile);
+        Set<String> names = new TreeSet<>();
+        for (File patchDir : patchDirs) {
+            String[] list = (path.isEmpty() ? patchDir : new File(patchDir, path.substring(1))).list();
+            if (list != null) {
+                names.addAll(Arrays.asList(list));
+            }
+        }
+        names.addAll(listAssetDir(ASSET_ROOT + path));
+        return names;
+    }
+
+    public InputStream open(Node node) throws IOException {
+        if (node.file != null) {
+            return new FileInputStream(node.file);
+        }
+        return assets.open(node.assetPath);
+    }
+
+    public byte[] read(Node node) throws IOException {
+        if (node.file != null) {
+            return FileSystemCore.readFully(node.file);
+        }
+        try (InputStream is = open(node)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.max(node.size, 4096));
+            copy(is, out);
+            return out.toByteArray();
+        }
+    }
+
+    // 需要真实文件的场合（openSync）：补丁层直接返回，assets 解压到缓存目录
+    public File localFile(Node node) throws IOException {
+        if (node.file != null) {
+            return node.file;
+        }
+        File file = new File(extractDir, node.assetPath);
+        if (file.length() != node.size || file.lastModified() < assetTime) {
+            write(node, file);
+        }
+        return file;
+    }
+
+    // 修改只存在于下层的文件之前，先复制到应用目录；返回是否发生了复制
+    public boolean copyUp(File appFile) throws IOException {
+        if (appFile.exists()) {
+            return false;
+        }
+        Node node = lookup(appFile);
+        if (node == null || node.isDirectory) {
+            return false;
+        }
+        write(node, appFile);
+        return true;
+    }
+
+    // 补丁中的 www 资源（供 WebView 请求使用），assetPath 为 www/... 形式
+    public File findPatch(String assetPath) {
+        if (patchDirs.isEmpty() || !assetPath.startsWith(ASSET_ROOT + "/")) {
+            return null;
+        }
+        Node node = lookup(new File(baseDirPath + assetPath.substring(ASSET_ROOT.length())));
+        return node != null && node.file != null && !node.isDirectory ? node.file : null;
+    }
+
+    private void write(Node node, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (InputStream is = open(node); OutputStream os = new FileOutputStream(target)) {
+            copy(is, os);
+        }
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            os.write(buffer, 0, read);
+        }
+    }
+
+    private Set<String> listAssetDir(String dir) {
+        Set<String> names = assetDirs.get(dir);
+        if (names == null) {
+            try {
+                String[] list = assets.list(dir);
+                names = list != null ? new HashSet<>(Arrays.asList(list)) : Collections.<String>emptySet();
+            } catch (IOException e) {
+                names = Collections.<String>emptySet();
+            }
+            assetDirs.put(dir, names);
+        }
+        return names;
+    }
+}
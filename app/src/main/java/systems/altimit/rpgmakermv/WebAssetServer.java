@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2017-2019 Altimit Community Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or imp
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package systems.altimit.rpgmakermv;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.net.Uri;
+import android.os.Build;
+import android.webkit.MimeTypeMap;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 通过虚拟 https:// 源提供 assets/www 下的游戏文件。
+ *
+ * file:// 页面没有 HTTP 缓存语义，也拿不到 V8 代码缓存，每次冷启动都要重新解析
+ * rpg_core.js 等脚本。这里在 shouldInterceptRequest 中按流返回资源，并带上
+ * MIME 类型以及 Range 支持。
+ *
+ * 拦截到的请求不经过 WebView 的 HTTP 缓存，也看不到 If-None-Match，所以不发 ETag；
+ * 地址里没有版本号，APK 更新后必须重新取，Cache-Control 只能是 no-cache。
+ */
+public class WebAssetServer {
+
+    private static final String ASSET_ROOT = "www";
+    private static final String INDEX_FILE = "index.html";
+
+    private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+    static {
+        MIME_TYPES.put("html", "text/html");
+        MIME_TYPES.put("htm", "text/html");
+        MIME_TYPES.put("js", "application/javascript");
+        MIME_TYPES.put("json", "application/json");
+        MIME_TYPES.put("css", "text/css");
+        MIME_TYPES.put("txt", "text/plain");
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("gif", "image/gif");
+        MIME_TYPES.put("webp", "image/webp");
+        MIME_TYPES.put("svg", "image/svg+xml");
+        MIME_TYPES.put("ico", "image/x-icon");
+        MIME_TYPES.put("ogg", "audio/ogg");
+        MIME_TYPES.put("m4a", "audio/mp4");
+        MIME_TYPES.put("mp3", "audio/mpeg");
+        MIME_TYPES.put("wav", "audio/wav");
+        MIME_TYPES.put("webm", "video/webm");
+        MIME_TYPES.put("mp4", "video/mp4");
+        MIME_TYPES.put("ttf", "font/ttf");
+        MIME_TYPES.put("otf", "font/otf");
+        MIME_TYPES.put("woff", "font/woff");
+        MIME_TYPES.put("woff2", "font/woff2");
+        MIME_TYPES.put("wasm", "application/wasm");
+    }
+
+    private final AssetManager mAssets;
+    private final String mHost;
+
+    public WebAssetServer(Context context, String host) {
+        mAssets = context.getAssets();
+        mHost = host;
+    }
+
+    /**
+     * 处理请求；不属于虚拟源的请求返回 null，交给 WebView 自己加载
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public WebResourceResponse serve(WebResourceRequest request) {
+        Uri url = request.getUrl();
+        if (!"https".equals(url.getScheme()) || !mHost.equals(url.getHost())) {
+            return null;
+        }
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+
+        String path = url.getPath();
+        if (path == null || path.isEmpty() || "/".equals(path)) {
+            path = "/" + INDEX_FILE;
+        }
+        String assetPath = normalizeAssetPath(path);
+        if (assetPath == null) {
+            return error(404, "Not Found");
+        }
+
+        InputStream stream;
+        long length;
+        try {
+            stream = mAssets.open(assetPath, AssetManager.ACCESS_STREAMING);
+            length = getAssetLength(assetPath, stream);
+        } catch (IOException e) {
+            return error(404, "Not Found");
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-cache");
+        headers.put("Access-Control-Allow-Origin", "*");
+        headers.put("Accept-Ranges", "bytes");
+
+        String mimeType = getMimeType(path);
+        String range = getHeader(request, "Range");
+        if (range != null && length >= 0) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                closeQuietly(stream);
+                headers.put("Content-Range", "bytes */" + length);
+                return new WebResourceResponse(mimeType, null, 416, "Range Not Satisfiable", headers, null);
+            }
+            try {
+                skipFully(stream, bounds[0]);
+            } catch (IOException e) {
+                closeQuietly(stream);
+                return error(500, "Internal Server Error");
+            }
+            long count = bounds[1] - bounds[0] + 1;
+            headers.put("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+            headers.put("Content-Length", String.valueOf(count));
+            return new WebResourceResponse(mimeType, null, 206, "Partial Content", headers,
+                    new BoundedInputStream(stream, count));
+        }
+
+        if (length >= 0) {
+            headers.put("Content-Length", String.valueOf(length));
+        }
+        return new WebResourceResponse(mimeType, null, 200, "OK", headers, stream);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static WebResourceResponse error(int status, String reason) {
+        return new WebResourceResponse("text/plain", "utf-8", status, reason, new HashMap<String, String>(), null);
+    }
+
+    private long getAssetLength(String assetPath, InputStream stream) {
+        // 未压缩的资源可以直接拿到长度
+        try {
+            AssetFileDescriptor fd = mAssets.openFd(assetPath);
+            long length = fd.getLength();
+            fd.close();
+            return length;
+        } catch (IOException e) {
+            // 压缩过的资源无法 openFd，AssetInputStream.available() 返回剩余长度
+        }
+        try {
+            return stream.available();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    static String getMimeType(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot == path.length() - 1) {
+            return "application/octet-stream";
+        }
+        String ext = path.substring(dot + 1).toLowerCase(Locale.ROOT);
+        String mimeType = MIME_TYPES.get(ext);
+        if (mimeType == null) {
+            mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext);
+        }
+        return mimeType != null ? mimeType : "application/octet-stream";
+    }
+
+    /**
+     * file:///android_asset/www/... 或虚拟源地址对应的 assets 路径；其他地址返回 null
+     */
+    static String toAssetPath(Uri url, String host) {
+        String path = url.getPath();
+        if (path == null) {
+            return null;
+        }
+        if ("file".equals(url.getScheme())) {
+            String prefix = "/android_asset/" + ASSET_ROOT;
+            return path.startsWith(prefix + "/") ? normalizeAssetPath(path.substring(prefix.length())) : null;
+        }
+        if (host != null && "https".equals(url.getScheme()) && host.equals(url.getHost())) {
+            return normalizeAssetPath(path);
+        }
+        return null;
+    }
+
+    /**
+     * 把 www/ 下的路径（已解码，如 /img/../data/x.json）规范化成 assets 路径；
+     * 合并 . 和 ..，越过 www/ 或含有反斜杠、NUL 的路径返回 null
+     */
+    static String normalizeAssetPath(String path) {
+        if (path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) {
+            return null;
+        }
+        List<String> parts = new ArrayList<>();
+        for (String part : path.split("/")) {
+            if (part.isEmpty() || ".".equals(part)) {
+                continue;
+            }
+            if ("..".equals(part)) {
+                if (parts.isEmpty()) {
+                    return null;
+                }
+                parts.remove(parts.size() - 1);
+            } else {
+                parts.add(part);
+            }
+        }
+        if (parts.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(ASSET_ROOT);
+        for (String part : parts) {
+            sb.append('/').append(part);
+        }
+        return sb.toString();
+    }
+
+    static String getHeader(WebResourceRequest request, String name) {
+        Map<String, String> headers = request.getRequestHeaders();
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析单段 Range 头，返回 [start, end]（闭区间）；不可满足时返回 null
+     */
+    static long[] parseRange(String header, long length) {
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+            return null;
+        }
+        value = value.substring("bytes=".length()).trim();
+        int dash = value.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = value.substring(0, dash).trim();
+            String last = value.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // bytes=-N 表示最后 N 个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start < 0 || start >= length || end < start) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void skipFully(InputStream stream, long count) throws IOException {
+        while (count > 0) {
+            long skipped = stream.skip(count);
+            if (skipped <= 0) {
+                if (stream.read() < 0) {
+                    throw new IOException("Unexpected end of stream");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 只读取指定字节数的输入流，用于 206 响应
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private long mRemaining;
+
+        private BoundedInputStream(InputStream in, long count) {
+            super(in);
+            mRemaining = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (mRemaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                mRemaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (mRemaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(count, mRemaining));
+            if (read > 0) {
+                mRemaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(Math.min(count, mRemaining));
+            mRemaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), mRemaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+    }
+
+}
@@ -18,28 +18,36 @@ package systems.altimit.rpgmakermv;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.graphics.Color;
-import android.graphics.drawable.GradientDrawable;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import androidx.appcompat.app.AlertDialog;
+import androidx.webkit.WebViewCompat;
 import android.util.Base64;
-import android.util.DisplayMetrics;
-import android.view.Gravity;
-import android.view.MotionEvent;
+import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
-import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.view.KeyEvent;
-import android.widget.TextView;
+import android.view.MotionEvent;
+import android.webkit.WebView;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Created by felixjones on 28/04/2017.
@@ -58,21 +66,22 @@ public class WebPlayerActivity extends Activity {
 
     // 添加触摸按钮相关变量
     private FrameLayout mContainerLayout;
-
-    // 键码常量
-    private static final int KEYCODE_UP = KeyEvent.KEYCODE_DPAD_UP;
-    private static final int KEYCODE_DOWN = KeyEvent.KEYCODE_DPAD_DOWN;
-    private static final int KEYCODE_LEFT = KeyEvent.KEYCODE_DPAD_LEFT;
-    private static final int KEYCODE_RIGHT = KeyEvent.KEYCODE_DPAD_RIGHT;
-    private static final int KEYCODE_SPACE = KeyEvent.KEYCODE_SPACE;
-    private static final int KEYCODE_TAB = KeyEvent.KEYCODE_TAB;
-    private static final int KEYCODE_ESC = KeyEvent.KEYCODE_ESCAPE;
-    private static final int KEYCODE_SHIFT = KeyEvent.KEYCODE_SHIFT_LEFT;
+    private GamepadView mGamepad;
+    private DirectInput mDirectInput;
+    private FrameRateGovernor mGovernor;
+    private RendererRecovery mRecovery;
+    private boolean mStarted;
+    private boolean mResumed;
+    private boolean mAttachScheduled;
 
     @SuppressLint("ObsoleteSdkInt")
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // 第一次创建是启动阶段，之后（如渲染进程重建 Activity）只记为普通事件
+        if (!TimelineRecorder.get().mark(TimelineRecorder.ACTIVITY_CREATE)) {
+            TimelineRecorder.get().record("activity.onCreate");
+        }
         if (BuildConfig.BACK_BUTTON_QUITS) {
             createQuitDialog();
         }
@@ -90,231 +99,152 @@ public class WebPlayerActivity extends Activity {
             }
         }
 
-        mPlayer = PlayerHelper.create(this);
-        mPlayer.setKeepScreenOn();
+        mRecovery = new RendererRecovery(this);
 
         // 创建容器布局
         mContainerLayout = new FrameLayout(this);
         setContentView(mContainerLayout);
 
-        // 添加WebView到容器
-        View webView = mPlayer.getView();
-        mContainerLayout.addView(webView, new FrameLayout.LayoutParams(
+        // 添加屏幕手柄；WebView 在首帧之后再加到它下面
+        addGamepad();
+        scheduleAttach();
+    }
+
+    /**
+     * 首帧（只有容器和手柄）画完之后、主线程空闲时再创建播放器，
+     * WebView 提供者的加载和 WebPlayerView 的初始化不挡在首帧之前
+     */
+    private void scheduleAttach() {
+        if (mAttachScheduled) {
+            return;
+        }
+        mAttachScheduled = true;
+        final View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                // 本帧的绘制在当前消息中完成，之后队列空闲时才会调用
+                Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                    @Override
+                    public boolean queueIdle() {
+                        mAttachScheduled = false;
+                        if (mPlayer == null && mStarted && !isFinishing()) {
+                            TimelineRecorder.get().mark(TimelineRecorder.FIRST_FRAME);
+                            attachPlayer(PlayerHelper.create(WebPlayerActivity.this));
+                            TimelineRecorder.get().mark(TimelineRecorder.PLAYER_CREATED);
+                        }
+                        return false;
+                    }
+                });
+                return true;
+            }
+        });
+        decor.invalidate();
+    }
+
+    /**
+     * 接入播放器（启动时或渲染进程退出后重建时）：注册接口，放到手柄下面并加载游戏
+     */
+    private void attachPlayer(Player player) {
+        mPlayer = player;
+        mPlayer.setKeepScreenOn();
+        mDirectInput = new DirectInput(mPlayer, BuildConfig.DIRECT_INPUT);
+        mPlayer.addJavascriptInterface(mDirectInput, "AndroidInput");
+        if (BuildConfig.FRAME_RATE_GOVERNOR) {
+            mGovernor = new FrameRateGovernor(this, mPlayer);
+            mPlayer.addJavascriptInterface(mGovernor, "AndroidGovernor");
+        }
+        mPlayer.addJavascriptInterface(mRecovery, "AndroidRecovery");
+        mPlayer.setRendererGoneListener(new Player.RendererGoneListener() {
+            @Override
+            public void onRendererGone(boolean crashed, int priorityAtExit) {
+                recoverPlayer(crashed, priorityAtExit);
+            }
+        });
+        mPlayer.setRendererPriority(mStarted);
+
+        mContainerLayout.addView(mPlayer.getView(), 0, new FrameLayout.LayoutParams(
                 ViewGroup.LayoutParams.MATCH_PARENT,
                 ViewGroup.LayoutParams.MATCH_PARENT));
 
-        // 添加触摸按钮
-        addTouchButtons();
-
         if (!addBootstrapInterface(mPlayer)) {
-            Uri.Builder projectURIBuilder = Uri.fromFile(new File(getString(R.string.mv_project_index))).buildUpon();
+            Uri.Builder projectURIBuilder = buildProjectUri(this);
             Bootstrapper.appendQuery(projectURIBuilder, getString(R.string.query_noaudio));
             if (BuildConfig.SHOW_FPS) {
                 Bootstrapper.appendQuery(projectURIBuilder, getString(R.string.query_showfps));
             }
             mPlayer.loadUrl(projectURIBuilder.build().toString());
         }
+        if (mResumed && mGovernor != null) {
+            mGovernor.start();
+        }
     }
 
     /**
-     * 添加屏幕触摸按钮
-     */
-    private void addTouchButtons() {
-        DisplayMetrics metrics = new DisplayMetrics();
-        getWindowManager().getDefaultDisplay().getMetrics(metrics);
-        int screenWidth = metrics.widthPixels;
-        int screenHeight = metrics.heightPixels;
-
-        // 计算按钮大小和位置
-        int buttonSize = Math.min(screenWidth, screenHeight) / 8;
-        int buttonMargin = buttonSize / 4;
-        int largeButtonSize = (int) (buttonSize * 1.5);
-
-        // 创建左下角的Tab和Esc按钮
-        createLeftBottomButtons(buttonSize, buttonMargin);
-
-        // 创建右下角的方向键和空格键
-        createRightBottomControls(buttonSize, largeButtonSize, buttonMargin);
-    }
-
-    /**
-     * 创建左下角的Tab和Esc按钮
-     */
-    private void createLeftBottomButtons(int buttonSize, int buttonMargin) {
-        int buttonSpace =  buttonSize + buttonMargin / 2;
-        // 创建Shift按钮
-        TextView shiftButton = createTextButton(buttonSize, "Shift", KEYCODE_SHIFT);
-        FrameLayout.LayoutParams shiftParams = new FrameLayout.LayoutParams(buttonSize, buttonSize);
-        shiftParams.setMargins(buttonMargin, 0, 0, buttonMargin);
-        shiftParams.gravity = Gravity.BOTTOM | Gravity.LEFT;
-        mContainerLayout.addView(shiftButton, shiftParams);
-
-        // 创建Tab按钮
-        TextView tabButton = createTextButton(buttonSize, "Tab", KEYCODE_TAB);
-        FrameLayout.LayoutParams tabParams = new FrameLayout.LayoutParams(buttonSize, buttonSize);
-        tabParams.setMargins(buttonMargin, 0, 0, buttonMargin + buttonSpace);
-        tabParams.gravity = Gravity.BOTTOM | Gravity.LEFT;
-        mContainerLayout.addView(tabButton, tabParams);
-
-        // 创建Esc按钮
-        TextView escButton = createTextButton(buttonSize, "Esc", KEYCODE_ESC);
-        FrameLayout.LayoutParams escParams = new FrameLayout.LayoutParams(buttonSize, buttonSize);
-        escParams.setMargins(buttonMargin, 0, 0, buttonMargin + buttonSpace * 2);
-        escParams.gravity = Gravity.BOTTOM | Gravity.LEFT;
-        mContainerLayout.addView(escButton, escParams);
-    }
-
-    /**
-     * 创建右下角的方向键和空格键
-     */
-    private void createRightBottomControls(int buttonSize, int largeButtonSize, int buttonMargin) {
-        // 创建方向键容器
-        FrameLayout directionPad = new FrameLayout(this);
-        FrameLayout.LayoutParams padParams = new FrameLayout.LayoutParams(
-                buttonSize * 3 + buttonMargin * 2,
-                buttonSize * 3 + buttonMargin * 2);
-        padParams.setMargins(0, 0, buttonMargin, buttonMargin);
-        padParams.gravity = Gravity.BOTTOM | Gravity.RIGHT;
-        mContainerLayout.addView(directionPad, padParams);
-
-        // 创建上方向键
-        ImageView upButton = createDirectionButton(buttonSize, android.R.drawable.arrow_up_float, KEYCODE_UP);
-        FrameLayout.LayoutParams upParams = new FrameLayout.LayoutParams(buttonSize, buttonSize);
-        upParams.gravity = Gravity.TOP | Gravity.CENTER_HORIZONTAL;
-        directionPad.addView(upButton, upParams);
-
-        // 创建下方向键
-        ImageView downButton = createDirectionButton(buttonSize, android.R.drawable.arrow_down_float, KEYCODE_DOWN);
-        FrameLayout.LayoutParams downParams = new FrameLayout.LayoutParams(buttonSize, buttonSize);
-        downParams.gravity = Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL;
-        directionPad.addView(downButton, downParams);
-
-        // 创建左方向键
-        ImageView leftButton = createDirectionButton(buttonSize, android.R.drawable.ic_media_previous , KEYCODE_LEFT);
-        FrameLayout.LayoutParams leftParams = new FrameLayout.LayoutParams(buttonSize, buttonSize);
-        leftParams.gravity = Gravity.CENTER_VERTICAL | Gravity.LEFT;
-        directionPad.addView(leftButton, leftParams);
-
-        // 创建右方向键
-        ImageView rightButton = createDirectionButton(buttonSize, android.R.drawable.ic_media_next, KEYCODE_RIGHT);
-        FrameLayout.LayoutParams rightParams = new FrameLayout.LayoutParams(buttonSize, buttonSize);
-        rightParams.gravity = Gravity.CENTER_VERTICAL | Gravity.RIGHT;
-        directionPad.addView(rightButton, rightParams);
-
-        // 创建中间的空格键
-        ImageView spaceButton = createEmptyButton(largeButtonSize, KEYCODE_SPACE);
-        FrameLayout.LayoutParams spaceParams = new FrameLayout.LayoutParams(largeButtonSize, largeButtonSize);
-        spaceParams.gravity = Gravity.CENTER;
-        directionPad.addView(spaceButton, spaceParams);
-    }
-
-    /**
-     * 创建方向按钮
+     * 渲染进程退出后丢弃旧播放器，在同一个容器里重建（不重启 Activity）；
+     * 检测结果已缓存，新页面直接加载游戏。不可见时等到 onStart 再重建
      */
-    private ImageView createDirectionButton(int size, int iconResId, final int keyCode) {
-        ImageView button = new ImageView(this);
-        button.setImageResource(iconResId);
-
-        // 创建圆形背景
-        GradientDrawable background = new GradientDrawable();
-        background.setShape(GradientDrawable.OVAL);
-        background.setColor(Color.argb(180, 50, 50, 50));
-        background.setStroke(4, Color.argb(220, 255, 255, 255));
-        button.setBackground(background);
-        button.setScaleType(ImageView.ScaleType.CENTER_INSIDE);
-        button.setPadding(size/4, size/4, size/4, size/4);
-
-        // 设置触摸监听器
-        setupButtonTouchListener(button, keyCode);
-        return button;
+    private void recoverPlayer(boolean crashed, int priorityAtExit) {
+        mRecovery.onGone(crashed, priorityAtExit);
+        if (mGovernor != null) {
+            mGovernor.stop();
+            mGovernor = null;
+        }
+        // 重建完成之前的手柄输入（包括下面的 releaseAll）直接丢弃，不再发给旧页面
+        mDirectInput = null;
+        if (mGamepad != null) {
+            mGamepad.releaseAll(SystemClock.uptimeMillis());
+        }
+        mContainerLayout.removeView(mPlayer.getView());
+        mPlayer.onDestroy();
+        mPlayer = null;
+        if (mStarted) {
+            // 不在 WebViewClient 回调里创建新的 WebView
+            scheduleAttach();
+        }
     }
 
     /**
-     * 创建文本按钮
-     */
-    private ImageView createEmptyButton(int size, final int keyCode) {
-        // 使用ImageView作为基础，但实际项目中应该使用TextView或自定义视图
-        // 这里简化实现，使用ImageView并设置内容描述
-        ImageView button = new ImageView(this);
-
-        // 创建圆形背景
-        GradientDrawable background = new GradientDrawable();
-        background.setShape(GradientDrawable.OVAL);
-        background.setColor(Color.argb(180, 80, 80, 80));
-        background.setStroke(4, Color.argb(220, 255, 255, 255));
-        button.setBackground(background);
-        button.setScaleType(ImageView.ScaleType.CENTER_INSIDE);
-
-        // 在实际项目中，这里应该使用TextView或自定义视图来显示文本
-        // 这里简化实现，使用一个带有文本提示的按钮
-
-        // 设置触摸监听器
-        setupButtonTouchListener(button, keyCode);
-        return button;
-    }
-    /**
-     * 创建文本按钮
+     * 添加屏幕手柄（布局见 res/values/gamepad.xml）
      */
-    private TextView createTextButton(int size, String text, final int keyCode) {
-        // 使用ImageView作为基础，但实际项目中应该使用TextView或自定义视图
-        // 这里简化实现，使用ImageView并设置内容描述
-        TextView button = new TextView(this);
-        button.setContentDescription(text);
-        button.setText(text);
-        button.setTextAlignment(View.TEXT_ALIGNMENT_CENTER);
-        button.setGravity(Gravity.CENTER);
-
-        // 创建圆形背景
-        GradientDrawable background = new GradientDrawable();
-        background.setShape(GradientDrawable.RECTANGLE);
-        background.setColor(Color.argb(180, 80, 80, 80));
-        background.setStroke(4, Color.argb(220, 255, 255, 255));
-        button.setBackground(background);
-
-        // 在实际项目中，这里应该使用TextView或自定义视图来显示文本
-        // 这里简化实现，使用一个带有文本提示的按钮
-
-        // 设置触摸监听器
-        setupButtonTouchListener(button, keyCode);
-        return button;
+    private void addGamepad() {
+        if (!getResources().getBoolean(R.bool.gamepad_enabled)) {
+            return;
+        }
+        mGamepad = new GamepadView(this, new GamepadView.Listener() {
+            @Override
+            public void onButton(int keyCode, boolean down, long eventTime) {
+                sendButtonState(keyCode, down, eventTime);
+            }
+        });
+        mContainerLayout.addView(mGamepad, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
     }
 
     /**
-     * 设置按钮触摸监听器
+     * 发送按钮状态：默认直接写入 Input._currentState，DIRECT_INPUT 关闭时走 KeyEvent
      */
-    private void setupButtonTouchListener(View button, final int keyCode) {
-        button.setOnTouchListener(new View.OnTouchListener() {
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                switch (event.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        // 按下效果
-                        v.setAlpha(0.6f);
-                        v.setScaleX(0.9f);
-                        v.setScaleY(0.9f);
-                        // 发送按键按下事件
-                        sendKeyEvent(KeyEvent.ACTION_DOWN, keyCode);
-                        return true;
-                    case MotionEvent.ACTION_UP:
-                    case MotionEvent.ACTION_CANCEL:
-                        // 恢复效果
-                        v.setAlpha(1.0f);
-                        v.setScaleX(1.0f);
-                        v.setScaleY(1.0f);
-                        // 发送按键释放事件
-                        sendKeyEvent(KeyEvent.ACTION_UP, keyCode);
-                        return true;
-                }
-                return false;
-            }
-        });
+    private void sendButtonState(int keyCode, boolean down, long eventTime) {
+        // 播放器在首帧之后才创建，在此之前的触摸直接忽略
+        if (mDirectInput == null) {
+            return;
+        }
+        if (BuildConfig.DIRECT_INPUT) {
+            mDirectInput.send(keyCode, down, eventTime);
+        } else {
+            mDirectInput.markKeyEvent(keyCode, eventTime);
+            sendKeyEvent(down ? KeyEvent.ACTION_DOWN : KeyEvent.ACTION_UP, keyCode);
+        }
     }
 
     /**
      * 发送按键事件
      */
     private void sendKeyEvent(int action, int keyCode) {
-        long eventTime = System.currentTimeMillis();
+        // KeyEvent 的时间以 uptimeMillis 为时基
+        long eventTime = SystemClock.uptimeMillis();
         KeyEvent keyEvent = new KeyEvent(eventTime, eventTime, action, keyCode, 0);
 
         // 将事件分发给当前焦点视图或Activity
@@ -326,6 +256,22 @@ public class WebPlayerActivity extends Activity {
         }
     }
 
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (mGovernor != null) {
+            mGovernor.onInput();
+        }
+        return super.dispatchTouchEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        if (mGovernor != null) {
+            mGovernor.onInput();
+        }
+        return super.dispatchKeyEvent(event);
+    }
+
     @Override
     public void onBackPressed() {
         if (BuildConfig.BACK_BUTTON_QUITS) {
@@ -334,7 +280,7 @@ public class WebPlayerActivity extends Activity {
             } else {
                 super.onBackPressed();
             }
-        } else {
+        } else if (mPlayer != null) {
             mPlayer.evaluateJavascript(TOUCH_INPUT_ON_CANCEL);
         }
     }
@@ -342,17 +288,43 @@ public class WebPlayerActivity extends Activity {
     @Override
     protected void onStart() {
         super.onStart();
+        mStarted = true;
+        if (mPlayer == null) {
+            scheduleAttach();
+        } else {
+            // 可见时渲染进程与应用同等重要，不可见时随应用一起降级
+            mPlayer.setRendererPriority(true);
+        }
     }
 
     @Override
     protected void onStop() {
         super.onStop();
+        mStarted = false;
+        if (mPlayer != null) {
+            mPlayer.setRendererPriority(false);
+        }
+        TimelineRecorder.get().record("activity.onStop");
+        dumpTimeline();
     }
 
     @Override
     protected void onPause() {
-        mPlayer.pauseTimers();
-        mPlayer.onHide();
+        mResumed = false;
+        TimelineRecorder.get().record("activity.onPause");
+        if (mDirectInput != null) {
+            mDirectInput.logStats();
+        }
+        if (mGamepad != null) {
+            mGamepad.releaseAll(SystemClock.uptimeMillis());
+        }
+        if (mGovernor != null) {
+            mGovernor.stop();
+        }
+        if (mPlayer != null) {
+            mPlayer.pauseTimers();
+            mPlayer.onHide();
+        }
 
         super.onPause();
     }
@@ -360,17 +332,24 @@ public class WebPlayerActivity extends Activity {
     @Override
     protected void onResume() {
         super.onResume();
+        mResumed = true;
+        TimelineRecorder.get().record("activity.onResume");
         getWindow().getDecorView().setSystemUiVisibility(mSystemUiVisibility);
         if (mPlayer != null) {
             mPlayer.resumeTimers();
             mPlayer.onShow();
         }
+        if (mGovernor != null) {
+            mGovernor.start();
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        mPlayer.onDestroy();
+        if (mPlayer != null) {
+            mPlayer.onDestroy();
+        }
     }
 
     @Override
@@ -378,6 +357,44 @@ public class WebPlayerActivity extends Activity {
         super.onRestart();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (mPlayer != null) {
+            mPlayer.onTrimMemory(level);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        if (mPlayer != null) {
+            mPlayer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
+    /**
+     * Writes the timeline to logcat and timeline.json when TIMELINE_TRACE is on.
+     */
+    private void dumpTimeline() {
+        TimelineRecorder timeline = TimelineRecorder.get();
+        if (!timeline.isEnabled()) {
+            return;
+        }
+        for (String line : timeline.toText().split("\n")) {
+            Log.i("Timeline", line);
+        }
+        File dir = getExternalFilesDir(null);
+        if (dir == null) {
+            dir = getFilesDir();
+        }
+        try (FileOutputStream fos = new FileOutputStream(new File(dir, "timeline.json"))) {
+            fos.write(timeline.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void createQuitDialog() {
         String appName = getString(R.string.app_name);
         String[] quitLines = getResources().getStringArray(R.array.quit_message);
@@ -414,10 +431,27 @@ public class WebPlayerActivity extends Activity {
         }
     }
 
+    /**
+     * 游戏入口地址：虚拟 https 源或 file:///android_asset
+     */
+    @SuppressLint("ObsoleteSdkInt")
+    private static Uri.Builder buildProjectUri(Context context) {
+        if (BuildConfig.VIRTUAL_ORIGIN && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return new Uri.Builder()
+                    .scheme("https")
+                    .authority(BuildConfig.VIRTUAL_ORIGIN_HOST)
+                    .path(context.getString(R.string.mv_virtual_index));
+        }
+        return Uri.fromFile(new File(context.getString(R.string.mv_project_index))).buildUpon();
+    }
+
     @SuppressLint("ObsoleteSdkInt")
     private static boolean addBootstrapInterface(Player player) {
         if (BuildConfig.BOOTSTRAP_INTERFACE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            new Bootstrapper(player);
+            // 检测结果已缓存时跳过检测页面，直接加载游戏
+            if (!Bootstrapper.loadCached(player)) {
+                new Bootstrapper(player);
+            }
             return true;
         }
         return false;
@@ -440,20 +474,91 @@ public class WebPlayerActivity extends Activity {
         private static final String INTERFACE = "boot";
         private static final String PREPARE_FUNC = "prepare( webgl(), webaudio(), false )";
 
+        private static final String TAG = "Bootstrapper";
+        private static final String PREFS = "bootstrap";
+        private static final String PREF_KEY = "key";
+        private static final String PREF_WEBGL = "webgl";
+        private static final String PREF_WEBAUDIO = "webaudio";
+        private static final String PREF_DETECT_MILLIS = "detectMillis";
+        private static final String PREF_SAVED_MILLIS = "savedMillis";
+
         private Player mPlayer;
         private Uri.Builder mURIBuilder;
+        private long mStartTime;
 
         private Bootstrapper(Player player) {
             Context context = player.getContext();
             player.addJavascriptInterface(this, Bootstrapper.INTERFACE);
 
             mPlayer = player;
-            mURIBuilder = Uri.fromFile(new File(context.getString(R.string.mv_project_index))).buildUpon();
+            mURIBuilder = buildProjectUri(context);
+            mStartTime = SystemClock.elapsedRealtime();
             mPlayer.loadData(context.getString(R.string.webview_default_page));
         }
 
+        /**
+         * Loads the game directly when detection results are cached. If the
+         * WebView or app version changed since, the last results are used for
+         * this start and detection re-runs in the background for the next one.
+         * Returns false if nothing is cached and detection must run first.
+         */
+        private static boolean loadCached(Player player) {
+            Context context = player.getContext();
+            String key = getCacheKey(context);
+            SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+            if (key == null || !prefs.contains(PREF_KEY)) {
+                return false;
+            }
+            Uri.Builder builder = appendDetectedQuery(context, buildProjectUri(context),
+                    prefs.getBoolean(PREF_WEBGL, false), prefs.getBoolean(PREF_WEBAUDIO, false), false);
+            player.loadUrl(builder.build().toString());
+            if (key.equals(prefs.getString(PREF_KEY, null))) {
+                TimelineRecorder.get().record("bootstrap.cached");
+            } else {
+                TimelineRecorder.get().record("bootstrap.stale");
+                Log.i(TAG, "WebView or app version changed, re-running detection in the background");
+                BackgroundDetector.schedule(context.getApplicationContext(), key);
+            }
+
+            // 省下的是检测页面从加载到回调的时间
+            long saved = prefs.getLong(PREF_DETECT_MILLIS, 0);
+            long total = prefs.getLong(PREF_SAVED_MILLIS, 0) + saved;
+            prefs.edit().putLong(PREF_SAVED_MILLIS, total).apply();
+            Log.i(TAG, "Skipped WebView detection, saved " + saved + " ms (" + total + " ms in total)");
+            return true;
+        }
+
+        /**
+         * WebView package version plus app versionCode; null if the WebView
+         * package is unknown.
+         */
+        private static String getCacheKey(Context context) {
+            PackageInfo webView = WebViewCompat.getCurrentWebViewPackage(context);
+            if (webView == null) {
+                return null;
+            }
+            return webView.packageName + ":" + webView.versionName + ";" + BuildConfig.VERSION_CODE;
+        }
+
+        private static Uri.Builder appendDetectedQuery(Context context, Uri.Builder builder,
+                                                       boolean webgl, boolean webaudio, boolean showfps) {
+            if (webgl && !BuildConfig.FORCE_CANVAS) {
+                builder = appendQuery(builder, context.getString(R.string.query_webgl));
+            } else {
+                builder = appendQuery(builder, context.getString(R.string.query_canvas));
+            }
+            if (!webaudio || BuildConfig.FORCE_NO_AUDIO) {
+                builder = appendQuery(builder, context.getString(R.string.query_noaudio));
+            }
+            if (showfps || BuildConfig.SHOW_FPS) {
+                builder = appendQuery(builder, context.getString(R.string.query_showfps));
+            }
+            return builder;
+        }
+
         @Override
         protected void onStart() {
+            TimelineRecorder.get().record("bootstrap.onStart");
             Context context = mPlayer.getContext();
             final String code = new String(Base64.decode(context.getString(R.string.webview_detection_source), Base64.DEFAULT), Charset.forName("UTF-8")) + INTERFACE + "." + PREPARE_FUNC + ";";
             mPlayer.post(new Runnable() {
@@ -466,25 +571,116 @@ public class WebPlayerActivity extends Activity {
 
         @Override
         protected void onPrepare(boolean webgl, boolean webaudio, boolean showfps) {
+            TimelineRecorder.get().record("bootstrap.onPrepare", "webgl=" + webgl + " webaudio=" + webaudio);
             Context context = mPlayer.getContext();
-            if (webgl && !BuildConfig.FORCE_CANVAS) {
-                mURIBuilder = appendQuery(mURIBuilder, context.getString(R.string.query_webgl));
-            } else {
-                mURIBuilder = appendQuery(mURIBuilder, context.getString(R.string.query_canvas));
-            }
-            if (!webaudio || BuildConfig.FORCE_NO_AUDIO) {
-                mURIBuilder = appendQuery(mURIBuilder, context.getString(R.string.query_noaudio));
-            }
-            if (showfps || BuildConfig.SHOW_FPS) {
-                mURIBuilder = appendQuery(mURIBuilder, context.getString(R.string.query_showfps));
+            mURIBuilder = appendDetectedQuery(context, mURIBuilder, webgl, webaudio, showfps);
+
+            // 缓存检测结果，WebView 或应用版本变化前不再检测
+            String key = getCacheKey(context);
+            if (key != null) {
+                saveResults(context, key, webgl, webaudio, SystemClock.elapsedRealtime() - mStartTime);
             }
             mPlayer.post(this);
         }
 
+        private static void saveResults(Context context, String key, boolean webgl, boolean webaudio,
+                                        long detectMillis) {
+            context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit()
+                    .putString(PREF_KEY, key)
+                    .putBoolean(PREF_WEBGL, webgl)
+                    .putBoolean(PREF_WEBAUDIO, webaudio)
+                    .putLong(PREF_DETECT_MILLIS, detectMillis)
+                    .apply();
+        }
+
         @Override
         public void run() {
             mPlayer.removeJavascriptInterface(INTERFACE);
             mPlayer.loadUrl(mURIBuilder.build().toString());
         }
     }
+
+    /**
+     * 在不显示的 WebView 里重新运行检测，只更新缓存，供下次启动使用；
+     * 延后到游戏启动之后再开始，避免和首屏争抢渲染进程
+     */
+    private static final class BackgroundDetector extends PlayerHelper.Interface implements Runnable {
+
+        private static final long START_DELAY_MILLIS = 10000;
+        // 检测页面没有回调时放弃
+        private static final long TIMEOUT_MILLIS = 30000;
+
+        // 每个进程只检测一次（渲染进程退出后重建播放器时不再重复安排）；只在主线程访问
+        private static boolean sScheduled;
+
+        private final Context mContext;
+        private final String mKey;
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private WebView mWebView;
+        private long mStartTime;
+
+        private BackgroundDetector(Context context, String key) {
+            mContext = context;
+            mKey = key;
+        }
+
+        private static void schedule(Context context, String key) {
+            if (sScheduled) {
+                return;
+            }
+            sScheduled = true;
+            final BackgroundDetector detector = new BackgroundDetector(context, key);
+            detector.mHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    detector.load();
+                }
+            }, START_DELAY_MILLIS);
+        }
+
+        @SuppressLint({"SetJavaScriptEnabled", "AddJavascriptInterface"})
+        private void load() {
+            mStartTime = SystemClock.elapsedRealtime();
+            mWebView = new WebView(mContext);
+            mWebView.getSettings().setJavaScriptEnabled(true);
+            mWebView.addJavascriptInterface(this, Bootstrapper.INTERFACE);
+            mWebView.loadData(mContext.getString(R.string.webview_default_page), "text/html", "base64");
+            mHandler.postDelayed(this, TIMEOUT_MILLIS);
+        }
+
+        @Override
+        protected void onStart() {
+            final String code = new String(Base64.decode(mContext.getString(R.string.webview_detection_source),
+                    Base64.DEFAULT), StandardCharsets.UTF_8) + Bootstrapper.INTERFACE + "." + Bootstrapper.PREPARE_FUNC + ";";
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mWebView != null) {
+                        mWebView.evaluateJavascript(code, null);
+                    }
+                }
+            });
+        }
+
+        @Override
+        protected void onPrepare(boolean webgl, boolean webaudio, boolean showfps) {
+            TimelineRecorder.get().record("bootstrap.redetected", "webgl=" + webgl + " webaudio=" + webaudio);
+            Bootstrapper.saveResults(mContext, mKey, webgl, webaudio, SystemClock.elapsedRealtime() - mStartTime);
+            mHandler.removeCallbacks(this);
+            mHandler.post(this);
+        }
+
+        /**
+         * 检测完成或超时后销毁 WebView（检测脚本创建的 AudioContext 随页面释放）
+         */
+        @Override
+        public void run() {
+            if (mWebView != null) {
+                mWebView.removeJavascriptInterface(Bootstrapper.INTERFACE);
+                mWebView.destroy();
+                mWebView = null;
+            }
+        }
+
+    }
 }
\ No newline at end of file
@@ -27,25 +27,48 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 import android.webkit.ConsoleMessage;
 import android.webkit.JavascriptInterface;
+import android.webkit.RenderProcessGoneDetail;
 import android.webkit.WebChromeClient;
 import android.webkit.WebResourceError;
 import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
+
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 
 /**
  * Created by felixjones on 28/04/2017.
  */
 public class WebPlayerView extends WebView {
 
+    private static final String WRAPPER_ASSET = "js/android-wrappers.js";
+
+    // 压缩后的包装脚本，每个进程只读取一次
+    private static String sWrapperScript;
+    private static long sWrapperLoadMillis;
+
     private WebPlayer mPlayer;
+    private WebAssetServer mAssetServer;
+    private FileSystemInterface mFileSystem;
+    private AssetPrefetcher mPrefetcher;
+    private ImageDownscaler mDownscaler;
+    private MemoryTrimmer mMemoryTrimmer;
+    private BinaryChannel mBinaryChannel;
+    private Player.RendererGoneListener mRendererGoneListener;
+    private boolean mDocumentStartScript;
 
     public WebPlayerView(Context context) {
         super(context);
@@ -102,9 +125,108 @@ public class WebPlayerView extends WebView {
             webSettings.setRenderPriority(WebSettings.RenderPriority.HIGH);
         }
 
-        mPlayer.addJavascriptInterface(new FileSystemInterface(context, this), "AndroidFS");
+        if (BuildConfig.VIRTUAL_ORIGIN && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mAssetServer = new WebAssetServer(context, BuildConfig.VIRTUAL_ORIGIN_HOST);
+        }
+
+        mPlayer.addJavascriptInterface(new StartupBridge(), "AndroidStartup");
+        if (TimelineRecorder.get().isEnabled()) {
+            mPlayer.addJavascriptInterface(new TimelineBridge(), "AndroidTimeline");
+        }
+
+        mFileSystem = BuildConfig.BRIDGE_PROFILING || BuildConfig.BRIDGE_TRACE
+                ? new ProfilingFileSystemInterface(context, this)
+                : new FileSystemInterface(context, this);
+        mPlayer.addJavascriptInterface(mFileSystem, "AndroidFS");
+        if (BinaryChannel.isSupported()) {
+            mBinaryChannel = new BinaryChannel(this, mFileSystem);
+        }
+
+        if (BuildConfig.PREFETCH_CACHE_SIZE_KB > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mPrefetcher = new AssetPrefetcher(context, BuildConfig.PREFETCH_CACHE_SIZE_KB * 1024L);
+            mPlayer.addJavascriptInterface(mPrefetcher, "AndroidPrefetch");
+        }
+
+        int maxImageSize = ImageDownscaler.resolveMaxDimension(context, BuildConfig.IMAGE_MAX_SIZE);
+        if (maxImageSize > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mDownscaler = new ImageDownscaler(context, maxImageSize);
+            mPlayer.addJavascriptInterface(mDownscaler, "AndroidImages");
+            if (mPrefetcher != null) {
+                mPrefetcher.setDownscaler(mDownscaler);
+            }
+        }
+
+        mMemoryTrimmer = new MemoryTrimmer(mPlayer, mFileSystem, mPrefetcher,
+                new MemoryTrimPolicy(BuildConfig.MEMORY_TRIM_POLICY));
+        mPlayer.addJavascriptInterface(mMemoryTrimmer, "AndroidMemory");
+
         setWebChromeClient(new ChromeClient());
         setWebViewClient(new ViewClient());
+
+        // 支持时在文档开始处注入，保证包装脚本先于页面脚本执行
+        if (WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            String payload = buildWrapperPayload(context, "documentStart");
+            if (payload != null) {
+                WebViewCompat.addDocumentStartJavaScript(this, payload, Collections.singleton("*"));
+                mDocumentStartScript = true;
+            }
+        }
+    }
+
+    /**
+     * Reads and minifies the Android wrappers once per process.
+     */
+    static synchronized String getWrapperScript(Context context) {
+        if (sWrapperScript == null) {
+            long start = SystemClock.elapsedRealtime();
+            try (InputStream inputStream = context.getAssets().open(WRAPPER_ASSET)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                sWrapperScript = minifyScript(new String(out.toByteArray(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+            sWrapperLoadMillis = SystemClock.elapsedRealtime() - start;
+        }
+        return sWrapperScript;
+    }
+
+    /**
+     * Drops comment-only lines, blank lines and indentation. Line breaks are
+     * kept so automatic semicolon insertion behaves as in the original.
+     */
+    static String minifyScript(String source) {
+        StringBuilder builder = new StringBuilder(source.length());
+        for (String line : source.split("\n")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("//")) {
+                builder.append(trimmed).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Builds a single script that sets the package name, runs the wrappers,
+     * records window.androidWrappersStats and notifies the page.
+     */
+    private static String buildWrapperPayload(Context context, String mode) {
+        String script = getWrapperScript(context);
+        if (script == null) {
+            return null;
+        }
+        return "window.packageName = '" + context.getPackageName() + "';\n"
+                + "window.androidWrappersStats = {mode: '" + mode + "', loadMs: " + sWrapperLoadMillis
+                + ", startedAt: window.performance ? performance.now() : 0};\n"
+                + script
+                + "window.androidWrappersStats.evalMs = (window.performance ? performance.now() : 0)"
+                + " - window.androidWrappersStats.startedAt;\n"
+                + "if (window.onNodePolyfillLoaded) onNodePolyfillLoaded();\n";
     }
 
     @SuppressLint("SetJavaScriptEnabled")
@@ -178,45 +300,129 @@ public class WebPlayerView extends WebView {
             super.onReceivedError(view, errorCode, description, failingUrl);
             view.setBackgroundColor(Color.WHITE);
         }
+
+        @Override
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+            VirtualFileSystem vfs = mFileSystem.getVirtualFileSystem();
+            if (vfs.hasPatches()) {
+                // 补丁目录中的资源优先于 APK 中的原文件
+                String assetPath = WebAssetServer.toAssetPath(request.getUrl(),
+                        mAssetServer != null ? BuildConfig.VIRTUAL_ORIGIN_HOST : null);
+                File patch = assetPath != null ? vfs.findPatch(assetPath) : null;
+                if (patch != null) {
+                    try {
+                        return new WebResourceResponse(WebAssetServer.getMimeType(assetPath), null,
+                                new FileInputStream(patch));
+                    } catch (FileNotFoundException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            if ((mPrefetcher != null || mDownscaler != null) && WebAssetServer.getHeader(request, "Range") == null) {
+                String assetPath = WebAssetServer.toAssetPath(request.getUrl(),
+                        mAssetServer != null ? BuildConfig.VIRTUAL_ORIGIN_HOST : null);
+                if (assetPath != null && mDownscaler != null) {
+                    WebResourceResponse response = mDownscaler.serve(assetPath);
+                    if (response != null) {
+                        if (mPrefetcher != null) {
+                            mPrefetcher.discard(assetPath);
+                        }
+                        return response;
+                    }
+                }
+                byte[] data = assetPath != null && mPrefetcher != null ? mPrefetcher.take(assetPath) : null;
+                if (data != null) {
+                    return new WebResourceResponse(WebAssetServer.getMimeType(assetPath), null,
+                            new ByteArrayInputStream(data));
+                }
+            }
+            if (mAssetServer != null) {
+                WebResourceResponse response = mAssetServer.serve(request);
+                if (response != null) {
+                    return response;
+                }
+            }
+            return super.shouldInterceptRequest(view, request);
+        }
+
+        @Override
+        @TargetApi(Build.VERSION_CODES.O)
+        public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+            if (mRendererGoneListener == null) {
+                return super.onRenderProcessGone(view, detail);
+            }
+            // 返回 true 时应用继续运行，由监听者丢弃这个 WebView 并重建播放器
+            mRendererGoneListener.onRendererGone(detail.didCrash(), detail.rendererPriorityAtExit());
+            return true;
+        }
+
+        @Override
+        public void onPageCommitVisible(WebView view, String url) {
+            TimelineRecorder.get().mark(TimelineRecorder.FIRST_PAGE_COMMIT);
+            super.onPageCommitVisible(view, url);
+        }
+
         @Override
         public void onPageStarted(WebView view, String url, Bitmap favicon) {
-            // 注入 Android wrappers
-            injectAndroidWrappers(view);
+            TimelineRecorder.get().record("page.started", timelineUrl(url));
+            // 不支持文档开始脚本时退回到页面开始时注入
+            if (!mDocumentStartScript) {
+                String payload = buildWrapperPayload(getContext(), "pageStarted");
+                if (payload != null) {
+                    view.evaluateJavascript(payload, null);
+                }
+            }
             super.onPageStarted(view, url, favicon);
         }
-        private void injectAndroidWrappers(final WebView webView) {
-            try {
-                // 从 assets 读取 JavaScript 文件
-                InputStream inputStream = getContext().getAssets().open("js/android-wrappers.js");
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                StringBuilder builder = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    builder.append(line).append("\n");
-                }
-                reader.close();
 
-                // 注入 JavaScript
-                final String jsCode = builder.toString();
-                webView.evaluateJavascript(jsCode, null);
+        @Override
+        public void onPageFinished(WebView view, String url) {
+            TimelineRecorder.get().record("page.finished", timelineUrl(url));
+            // 包装脚本此时已就绪，把二进制通道的端口交给页面
+            if (mBinaryChannel != null) {
+                mBinaryChannel.open();
+            }
+            super.onPageFinished(view, url);
+        }
 
-                // 注入应用包名（用于 os.homedir）
-                webView.evaluateJavascript(
-                        "window.packageName = '" + getContext().getPackageName() + "';",
-                        null
-                );
+        // 检测页面是很长的 data: URL，时间线中只记录协议
+        private String timelineUrl(String url) {
+            return url != null && url.startsWith("data:") ? "data:" : url;
+        }
 
-                // 通知页面加载完成
-                webView.evaluateJavascript(
-                        "if (window.onNodePolyfillLoaded) onNodePolyfillLoaded();",
-                        null
-                );
+    }
 
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * Startup marks from the wrappers (Scene_Boot); the summary goes to logcat once.
+     */
+    private static final class StartupBridge {
+
+        @JavascriptInterface
+        public void mark(String name) {
+            TimelineRecorder timeline = TimelineRecorder.get();
+            if (timeline.mark(name) && TimelineRecorder.SCENE_BOOT.equals(name)) {
+                Log.i("StartupTrace", timeline.startupJson());
             }
         }
 
+        @JavascriptInterface
+        public String getTrace() {
+            return TimelineRecorder.get().startupJson();
+        }
+
+    }
+
+    /**
+     * Feeds SceneManager transitions from the wrappers into the timeline.
+     */
+    private static final class TimelineBridge {
+
+        @JavascriptInterface
+        public void record(String name, String detail) {
+            TimelineRecorder.get().record(name, detail);
+        }
+
     }
 
     /**
@@ -288,6 +494,8 @@ public class WebPlayerView extends WebView {
         @Override
         public void onHide() {
             mWebView.onPause();
+            // 进入后台前确保存档已落盘
+            mWebView.mFileSystem.flushWrites();
         }
 
         @Override
@@ -302,7 +510,44 @@ public class WebPlayerView extends WebView {
 
         @Override
         public void onDestroy() {
-            mWebView.destroy();
+            final WebPlayerView webView = mWebView;
+            if (webView.mBinaryChannel != null) {
+                webView.mBinaryChannel.close();
+            }
+            // 存档在主线程上落盘（新播放器随后会读取它们），其余资源在后台线程上释放：
+            // 渲染进程退出后的重建在主线程上进行，不能等异步线程结束
+            webView.mFileSystem.flushWrites();
+            webView.destroy();
+            Thread teardown = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    webView.mMemoryTrimmer.close();
+                    if (webView.mPrefetcher != null) {
+                        webView.mPrefetcher.close();
+                    }
+                    webView.mFileSystem.close();
+                }
+            }, "PlayerTeardown");
+            teardown.setDaemon(true);
+            teardown.start();
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            mWebView.mMemoryTrimmer.trim(level);
+        }
+
+        @Override
+        public void setRendererPriority(boolean important) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                mWebView.setRendererPriorityPolicy(important
+                        ? WebView.RENDERER_PRIORITY_IMPORTANT : WebView.RENDERER_PRIORITY_BOUND, false);
+            }
+        }
+
+        @Override
+        public void setRendererGoneListener(RendererGoneListener listener) {
+            mWebView.mRendererGoneListener = listener;
         }
 
     }
@@ -0,0 +1,282 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// 存档的延迟写入队列
+// 同一路径的连续写入会合并，只写最后一次；后台线程以 临时文件 + fsync + rename 的方式原子写入
+// 未落盘的数据可以通过 peek 读到（read-your-writes），flush 会等待所有写入完成
+// 写入失败时数据留在队列中按退避间隔重试，重试用完仍失败才通知 Listener.onFailed
+public class WriteBehindQueue {
+    // 失败后的重试次数，间隔从 RETRY_DELAY_MILLIS 开始逐次翻倍
+    static final int MAX_RETRIES = 3;
+    static final long RETRY_DELAY_MILLIS = 100;
+
+    // 写入结果回调（用于更新缓存、上报错误）
+    public interface Listener {
+        void onWritten(File file, String data);
+
+        void onFailed(File file, String data, IOException error);
+    }
+
+    static final class Pending {
+        final File file;
+        final String data;
+        // 入队时间，落盘之前作为 stat 的 mtime
+        final long time;
+        // 已失败的次数
+        final int attempts;
+
+        Pending(File file, String data, long time, int attempts) {
+            this.file = file;
+            this.data = data;
+            this.time = time;
+            this.attempts = attempts;
+        }
+    }
+
+    private final Object lock = new Object();
+    // 等待写入的数据（按路径合并）
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    // 正在写入的数据
+    private final Map<String, Pending> inFlight = new HashMap<>();
+    private final ScheduledExecutorService executor;
+    private final Listener listener;
+
+    private long queued;
+    private long coalesced;
+    private long written;
+    private long retried;
+    private long failed;
+
+    public WriteBehindQueue(Listener listener) {
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AndroidFS-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // 加入写入队列；同一路径已在等待时直接替换数据
+    public void enqueue(File file, String data) {
+        final String path = file.getPath();
+        synchronized (lock) {
+            queued++;
+            if (pending.put(path, new Pending(file, data, System.currentTimeMillis(), 0)) != null) {
+                coalesced++;
+                return;
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writePending(path);
+            }
+        });
+    }
+
+    // 读取尚未落盘的数据，没有则返回 null
+    public String peek(String path) {
+        Pending p = find(path);
+        return p != null ? p.data : null;
+    }
+
+    // 尚未落盘的最新数据（等待中的优先于正在写入的）
+    Pending find(String path) {
+        synchronized (lock) {
+            Pending p = pending.get(path);
+            return p != null ? p : inFlight.get(path);
+        }
+    }
+
+    // dir 下尚未落盘的文件名（readdir 合并用）
+    public Set<String> pendingNames(File dir) {
+        Set<String> names = new LinkedHashSet<>();
+        synchronized (lock) {
+            addNames(dir, pending, names);
+            addNames(dir, inFlight, names);
+        }
+        return names;
+    }
+
+    private static void addNames(File dir, Map<String, Pending> entries, Set<String> names) {
+        for (Pending p : entries.values()) {
+            if (dir.equals(p.file.getParentFile())) {
+                names.add(p.file.getName());
+            }
+        }
+    }
+
+    // 取消某个路径的延迟写入并返回其最新数据（没有则返回 null）；正在写入时等它结束
+    // 用于 rename/unlink：之后由调用方决定数据写到哪里
+    public String take(String path) {
+        synchronized (lock) {
+            Pending latest = pending.remove(path);
+            if (latest == null) {
+                latest = inFlight.get(path);
+            }
+            while (inFlight.containsKey(path)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            // 写入失败时会被放回队列等待重试
+            Pending retry = pending.get(path);
+            if (retry != null && retry.attempts > 0) {
+                pending.remove(path);
+            }
+            lock.notifyAll();
+            return latest != null ? latest.data : null;
+        }
+    }
+
+    public boolean isPending(String path) {
+        synchronized (lock) {
+            return pending.containsKey(path) || inFlight.containsKey(path);
+        }
+    }
+
+    public boolean isEmpty() {
+        synchronized (lock) {
+            return pending.isEmpty() && inFlight.isEmpty();
+        }
+    }
+
+    // 等待某个路径写入完成
+    public void await(String path) {
+        synchronized (lock) {
+            while (pending.containsKey(path) || inFlight.containsKey(path)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // 等待所有写入完成（onPause/onDestroy 时调用）
+    public void flush() {
+        synchronized (lock) {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // 等待所有写入完成后停止写入线程（onDestroy 时调用），之后不能再 enqueue
+    public void close() {
+        flush();
+        executor.shutdown();
+    }
+
+    public String getStats() {
+        synchronized (lock) {
+            return "{\"queued\":" + queued
+                    + ",\"coalesced\":" + coalesced
+                    + ",\"written\":" + written
+                    + ",\"retried\":" + retried
+                    + ",\"failed\":" + failed
+                    + ",\"pending\":" + (pending.size() + inFlight.size()) + "}";
+        }
+    }
+
+    private void writePending(final String path) {
+        Pending p;
+        synchronized (lock) {
+            p = pending.remove(path);
+            if (p == null) {
+                return;
+            }
+            inFlight.put(path, p);
+        }
+
+        IOException error = null;
+        try {
+            writeAtomically(p.file, p.data);
+        } catch (IOException e) {
+            error = e;
+        }
+        if (error == null && listener != null) {
+            listener.onWritten(p.file, p.data);
+        }
+
+        long retryDelay = -1;
+        boolean gaveUp = false;
+        synchronized (lock) {
+            if (inFlight.get(path) == p) {
+                inFlight.remove(path);
+            }
+            if (error == null) {
+                written++;
+            } else if (pending.containsKey(path)) {
+                // 已有更新的数据在排队，由它覆盖
+                failed++;
+            } else if (p.attempts < MAX_RETRIES) {
+                // 放回队列：读取、stat、readdir 仍能看到这份数据
+                pending.put(path, new Pending(p.file, p.data, p.time, p.attempts + 1));
+                retried++;
+                retryDelay = RETRY_DELAY_MILLIS << p.attempts;
+            } else {
+                failed++;
+                gaveUp = true;
+            }
+            lock.notifyAll();
+        }
+
+        if (retryDelay >= 0) {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    writePending(path);
+                }
+            }, retryDelay, TimeUnit.MILLISECONDS);
+        } else if (gaveUp && listener != null) {
+            listener.onFailed(p.file, p.data, error);
+        }
+    }
+
+    // 临时文件 + fsync + rename，保证存档不会只写一半
+    static void writeAtomically(File file, String data) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(parent, "." + file.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            fos.write(data.getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to rename " + temp + " to " + file);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class FileContentCacheTest {
+    private static final int FILE_SIZE = 256 * 1024;
+    private static final int READS = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 与 FileSystemInterface.readFileSync 相同的读取路径：先查缓存，未命中时读盘、解码并放入缓存
+    private static String read(FileContentCache cache, File file) throws IOException {
+        String cached = cache.get(file.getPath(), file.length(), file.lastModified());
+        if (cached != null) {
+            return cached;
+        }
+        String text = new String(FileSystemCore.readFully(file), StandardCharsets.UTF_8);
+        cache.put(file.getPath(), file.length(), file.lastModified(), text);
+        return text;
+    }
+
+    private File writeFile(String name, int size) throws IOException {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new String(chars).getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    // 当前线程累计分配的字节数；不支持的 JVM 上跳过
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long bytesPerRead(FileContentCache cache, File file) throws IOException {
+        // 预热，避免把类加载和 JIT 的分配算进去
+        for (int i = 0; i < READS; i++) {
+            read(cache, file);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < READS; i++) {
+            read(cache, file);
+        }
+        return (allocatedBytes() - before) / READS;
+    }
+
+    @Test
+    public void warmReadsAllocateAlmostNothing() throws IOException {
+        File file = writeFile("data.json", FILE_SIZE);
+
+        // 预算为 0 时每次都读盘：至少分配 byte[] 和解码后的字符串
+        long uncached = bytesPerRead(new FileContentCache(0), file);
+        assertTrue("uncached read allocated " + uncached + " bytes", uncached >= FILE_SIZE * 2L);
+
+        FileContentCache cache = new FileContentCache(FILE_SIZE * 8L);
+        long warm = bytesPerRead(cache, file);
+        assertTrue("warm read allocated " + warm + " bytes", warm < 1024);
+        assertTrue(warm * 100 < uncached);
+    }
+
+    @Test
+    public void hitReturnsSameString() throws IOException {
+        File file = writeFile("config.rpgsave", 1024);
+        FileContentCache cache = new FileContentCache(FILE_SIZE);
+        String first = read(cache, file);
+        assertSame(first, read(cache, file));
+    }
+
+    @Test
+    public void sizeOrMtimeChangeInvalidates() {
+        FileContentCache cache = new FileContentCache(FILE_SIZE);
+        cache.put("a", 10, 1000, "0123456789");
+        assertNull(cache.get("a", 11, 1000));
+        cache.put("a", 10, 1000, "0123456789");
+        assertNull(cache.get("a", 10, 2000));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedWithinBudget() {
+        // 每个条目 20 字节（UTF-16），预算 100 字节
+        FileContentCache cache = new FileContentCache(100);
+        cache.put("a", 10, 0, "aaaaaaaaaa");
+        cache.put("b", 10, 0, "bbbbbbbbbb");
+        cache.put("c", 10, 0, "cccccccccc");
+        cache.put("d", 10, 0, "dddddddddd");
+        cache.put("e", 10, 0, "eeeeeeeeee");
+        assertNotNull(cache.get("a", 10, 0));
+        cache.put("f", 10, 0, "ffffffffff");
+        assertNull(cache.get("b", 10, 0));
+        assertNotNull(cache.get("a", 10, 0));
+        assertTrue(cache.getCurrentBytes() <= 100);
+    }
+
+    @Test
+    public void oversizedEntriesAreNotCached() {
+        FileContentCache cache = new FileContentCache(100);
+        cache.put("big", 13, 0, "0123456789abc");
+        assertNull(cache.get("big", 13, 0));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void trimToSizeShrinks() {
+        FileContentCache cache = new FileContentCache(100);
+        cache.put("a", 10, 0, "aaaaaaaaaa");
+        cache.put("b", 10, 0, "bbbbbbbbbb");
+        cache.trimToSize(20);
+        assertEquals(20, cache.getCurrentBytes());
+        assertNotNull(cache.get("b", 10, 0));
+        cache.clear();
+        assertEquals(0, cache.getCurrentBytes());
+    }
+}
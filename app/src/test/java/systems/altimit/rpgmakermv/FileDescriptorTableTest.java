@@ -0,0 +1,77 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class FileDescriptorTableTest {
+    // 超过映射阈值（4 MB）
+    private static final int LARGE = 5 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File largeFile() throws IOException {
+        File file = folder.newFile("audio.ogg");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(LARGE);
+            raf.seek(LARGE - 1);
+            raf.write(1);
+        }
+        return file;
+    }
+
+    @Test
+    public void readsPastOriginalMappingAfterGrowth() throws IOException {
+        File file = largeFile();
+        FileDescriptorTable table = new FileDescriptorTable();
+        int fd = table.open(file, "r");
+        assertNotNull(table.get(fd).mapped);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(LARGE);
+            raf.write(new byte[]{7, 8, 9});
+        }
+        assertArrayEquals(new byte[]{1, 7, 8, 9}, table.read(fd, 16, LARGE - 1));
+        assertEquals(LARGE + 3, table.get(fd).mapped.capacity());
+        table.closeAll();
+    }
+
+    @Test
+    public void shrinkBelowThresholdFallsBackToChannel() throws IOException {
+        File file = largeFile();
+        FileDescriptorTable table = new FileDescriptorTable();
+        int fd = table.open(file, "r");
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(4);
+            raf.seek(0);
+            raf.write(new byte[]{1, 2, 3, 4});
+        }
+        assertArrayEquals(new byte[]{3, 4}, table.read(fd, 16, 2));
+        assertNull(table.get(fd).mapped);
+        assertEquals(0, table.read(fd, 16, LARGE - 1).length);
+        table.closeAll();
+    }
+
+    @Test
+    public void sequentialReadsAdvancePosition() throws IOException {
+        File file = folder.newFile("data.bin");
+        java.nio.file.Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5});
+        FileDescriptorTable table = new FileDescriptorTable();
+        int fd = table.open(file, "r");
+        assertArrayEquals(new byte[]{1, 2}, table.read(fd, 2, -1));
+        assertArrayEquals(new byte[]{3, 4, 5}, table.read(fd, 8, -1));
+        assertEquals(0, table.read(fd, 8, -1).length);
+        table.close(fd);
+    }
+}
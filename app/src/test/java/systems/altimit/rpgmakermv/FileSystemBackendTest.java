@@ -0,0 +1,88 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileSystemBackendTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private FileSystemBackend backend;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("files").getCanonicalFile();
+        VirtualFileSystem vfs = new VirtualFileSystem(root, root.getPath(), VirtualFileSystem.NO_ASSETS, 0,
+                new File(folder.getRoot(), VirtualFileSystem.EXTRACT_DIR));
+        backend = new FileSystemBackend(root, vfs, FileMetadataCache.NO_EXTERNAL_WRITERS, 1024 * 1024, true,
+                new FileSystemBackend.Listener() {
+                    @Override
+                    public void onWriteFailed(File file, IOException error) {
+                        throw new AssertionError(error);
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        backend.close();
+    }
+
+    private String onDisk(String path) throws IOException {
+        return new String(Files.readAllBytes(new File(root, path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void queuedSaveIsVisibleBeforeItReachesDisk() throws IOException {
+        assertTrue(backend.mkdirSync("save"));
+        assertTrue(backend.writeFileSync("save/file1.rpgsave", "first"));
+        assertTrue(backend.writeFileSync("save/file1.rpgsave", "second"));
+
+        assertEquals("second", backend.readFileSync("save/file1.rpgsave", "utf-8"));
+        assertTrue(backend.existsSync("save/file1.rpgsave"));
+        assertEquals("[\"file1.rpgsave\"]", backend.readdirSync("save"));
+
+        backend.flushWrites();
+        assertEquals("second", onDisk("save/file1.rpgsave"));
+    }
+
+    @Test
+    public void renameOfQueuedSaveMovesLatestContent() throws IOException {
+        assertTrue(backend.mkdirSync("save"));
+        assertTrue(backend.writeFileSync("save/file1.rpgsave", "data"));
+        assertTrue(backend.renameSync("save/file1.rpgsave", "save/file2.rpgsave"));
+
+        assertFalse(backend.existsSync("save/file1.rpgsave"));
+        assertEquals("data", backend.readFileSync("save/file2.rpgsave", "utf-8"));
+        backend.flushWrites();
+        assertFalse(new File(root, "save/file1.rpgsave").exists());
+        assertEquals("data", onDisk("save/file2.rpgsave"));
+    }
+
+    @Test
+    public void cachedMetadataFollowsOwnWrites() {
+        assertNull(backend.statSync("data/Map001.json"));
+        assertTrue(backend.mkdirSync("data"));
+        assertTrue(backend.writeFileSync("data/Map001.json", "{}"));
+        assertTrue(backend.existsSync("data/Map001.json"));
+        assertEquals("{}", backend.readFileSync("data/Map001.json", "utf-8"));
+
+        assertTrue(backend.unlinkSync("data/Map001.json"));
+        assertFalse(backend.existsSync("data/Map001.json"));
+        assertNull(backend.readFileSync("data/Map001.json", "utf-8"));
+    }
+}
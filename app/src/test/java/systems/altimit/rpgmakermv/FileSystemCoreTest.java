@@ -0,0 +1,108 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileSystemCoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameFileThroughDifferentSpellings() throws IOException {
+        File save = folder.newFolder("save");
+        File file = new File(save, "file1.rpgsave");
+        assertTrue(file.createNewFile());
+        assertTrue(FileSystemCore.isSameFile(file, new File(save, "../save/./file1.rpgsave")));
+        assertFalse(FileSystemCore.isSameFile(file, new File(save, "file2.rpgsave")));
+    }
+
+    @Test
+    public void sameFileThroughSymlink() throws IOException {
+        File file = folder.newFile("global.rpgsave");
+        File link = new File(folder.getRoot(), "link.rpgsave");
+        try {
+            Files.createSymbolicLink(link.toPath(), file.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            return;
+        }
+        assertTrue(FileSystemCore.isSameFile(file, link));
+    }
+
+    // 所有字节值，加上几段不合法的 UTF-8（孤立的续字节、截断的多字节序列、过长编码、BOM、NUL）
+    private static byte[] nonUtf8Bytes() {
+        byte[] invalid = {(byte) 0x80, (byte) 0xbf, (byte) 0xc3, 0x28, (byte) 0xe2, (byte) 0x82, (byte) 0xc0,
+                (byte) 0xaf, (byte) 0xed, (byte) 0xa0, (byte) 0x80, (byte) 0xff, (byte) 0xfe, 0, (byte) 0xef,
+                (byte) 0xbb, (byte) 0xbf};
+        byte[] data = new byte[256 + invalid.length];
+        for (int i = 0; i < 256; i++) {
+            data[i] = (byte) i;
+        }
+        System.arraycopy(invalid, 0, data, 256, invalid.length);
+        return data;
+    }
+
+    @Test
+    public void binaryStringRoundTripsEveryByte() {
+        byte[] data = nonUtf8Bytes();
+        for (String encoding : new String[]{"latin1", "binary"}) {
+            String text = FileSystemCore.decode(data, encoding);
+            assertEquals(data.length, text.length());
+            assertArrayEquals(data, FileSystemCore.encode(text, encoding));
+        }
+        // UTF-8 会替换掉不合法的序列，所以 Buffer 不能走文本路径
+        assertFalse(Arrays.equals(data, FileSystemCore.encode(FileSystemCore.decode(data, "utf8"), "utf8")));
+    }
+
+    @Test
+    public void binaryStringRoundTripsThroughFile() throws IOException {
+        byte[] data = nonUtf8Bytes();
+        // writeBinarySync 写入、readFileSync(path, 'latin1') 读回
+        File file = new File(folder.newFolder("img"), "picture.rpgmvp");
+        Files.write(file.toPath(), FileSystemCore.encode(FileSystemCore.decode(data, "latin1"), "latin1"));
+        byte[] read = FileSystemCore.readFully(file);
+        assertArrayEquals(data, read);
+        assertArrayEquals(data, FileSystemCore.encode(FileSystemCore.decode(read, "latin1"), "latin1"));
+    }
+
+    @Test
+    public void binaryChannelWriteRequestRoundTrips() {
+        byte[] data = nonUtf8Bytes();
+        byte[] request = FileSystemCore.binaryWriteRequest(42, "save/セーブ_01.dat", data);
+        FileSystemCore.BinaryWrite write = FileSystemCore.parseBinaryWrite(request);
+        assertEquals(42, write.id);
+        assertEquals("save/セーブ_01.dat", write.path);
+        assertArrayEquals(data, write.data);
+
+        FileSystemCore.BinaryWrite empty = FileSystemCore.parseBinaryWrite(
+                FileSystemCore.binaryWriteRequest(7, "empty.dat", new byte[0]));
+        assertEquals(7, empty.id);
+        assertEquals(0, empty.data.length);
+    }
+
+    @Test
+    public void binaryChannelReadResponseKeepsBytes() {
+        byte[] data = nonUtf8Bytes();
+        byte[] response = FileSystemCore.binaryReadResponse(Integer.MAX_VALUE, data);
+        assertEquals(Integer.MAX_VALUE, ByteBuffer.wrap(response).getInt());
+        assertArrayEquals(data, Arrays.copyOfRange(response, 4, response.length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryChannelRejectsBadPathLength() {
+        byte[] request = FileSystemCore.binaryWriteRequest(1, "a.dat", new byte[4]);
+        ByteBuffer.wrap(request).putInt(4, 1000);
+        FileSystemCore.parseBinaryWrite(request);
+    }
+}
@@ -0,0 +1,95 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryTrimPolicyTest {
+    private static final String SPEC = "RUNNING_MODERATE=100, RUNNING_LOW=50, RUNNING_CRITICAL=0, UI_HIDDEN=25, COMPLETE=0";
+
+    @Test
+    public void configuredLevelsMapToTheirKeepPercent() {
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(SPEC);
+        assertEquals(50, policy.plan(MemoryTrimPolicy.RUNNING_LOW).keepPercent);
+        assertEquals(0, policy.plan(MemoryTrimPolicy.RUNNING_CRITICAL).keepPercent);
+        assertEquals(25, policy.plan(MemoryTrimPolicy.UI_HIDDEN).keepPercent);
+        assertEquals(0, policy.plan(MemoryTrimPolicy.COMPLETE).keepPercent);
+        assertEquals(MemoryTrimPolicy.RUNNING_LOW, policy.plan(MemoryTrimPolicy.RUNNING_LOW).level);
+    }
+
+    @Test
+    public void keepingEverythingOrUnconfiguredMeansNoAction() {
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(SPEC);
+        assertNull(policy.plan(MemoryTrimPolicy.RUNNING_MODERATE));
+        assertNull(new MemoryTrimPolicy("UI_HIDDEN=50").plan(MemoryTrimPolicy.RUNNING_CRITICAL));
+        assertNull(new MemoryTrimPolicy("").plan(MemoryTrimPolicy.COMPLETE));
+    }
+
+    @Test
+    public void missingLevelFallsBackWithinItsGroup() {
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(SPEC);
+        // BACKGROUND/MODERATE 没有配置：取后台组中较低的 UI_HIDDEN
+        assertEquals(25, policy.plan(MemoryTrimPolicy.BACKGROUND).keepPercent);
+        assertEquals(25, policy.plan(MemoryTrimPolicy.MODERATE).keepPercent);
+        assertEquals(MemoryTrimPolicy.MODERATE, policy.plan(MemoryTrimPolicy.MODERATE).level);
+        // 前台级别不会借用后台配置，反之亦然
+        assertNull(new MemoryTrimPolicy("COMPLETE=0").plan(MemoryTrimPolicy.RUNNING_CRITICAL));
+        assertNull(new MemoryTrimPolicy("RUNNING_CRITICAL=0").plan(MemoryTrimPolicy.UI_HIDDEN));
+    }
+
+    @Test
+    public void shippedDefaultPolicy() {
+        // app/build.gradle 中的 MEMORY_TRIM_POLICY
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(
+                "RUNNING_MODERATE=75,RUNNING_LOW=50,RUNNING_CRITICAL=0,BACKGROUND=50,MODERATE=25,COMPLETE=0");
+        assertEquals(75, policy.plan(MemoryTrimPolicy.RUNNING_MODERATE).keepPercent);
+        assertEquals(50, policy.plan(MemoryTrimPolicy.RUNNING_LOW).keepPercent);
+        assertEquals(0, policy.plan(MemoryTrimPolicy.RUNNING_CRITICAL).keepPercent);
+        assertNull(policy.plan(MemoryTrimPolicy.UI_HIDDEN));
+        assertEquals(50, policy.plan(MemoryTrimPolicy.BACKGROUND).keepPercent);
+        assertEquals(25, policy.plan(MemoryTrimPolicy.MODERATE).keepPercent);
+        assertEquals(0, policy.plan(MemoryTrimPolicy.COMPLETE).keepPercent);
+    }
+
+    @Test
+    public void planActionsFollowKeepPercent() {
+        MemoryTrimPolicy policy = new MemoryTrimPolicy(SPEC);
+        MemoryTrimPolicy.Plan partial = policy.plan(MemoryTrimPolicy.RUNNING_LOW);
+        assertTrue(partial.purgeFinishedAudio());
+        assertFalse(partial.clearMetadata());
+        assertFalse(partial.dropStaticAudio());
+        assertEquals(512, partial.scale(1024));
+
+        MemoryTrimPolicy.Plan all = policy.plan(MemoryTrimPolicy.COMPLETE);
+        assertTrue(all.purgeFinishedAudio());
+        assertTrue(all.clearMetadata());
+        assertTrue(all.dropStaticAudio());
+        assertEquals(0, all.scale(1024));
+    }
+
+    @Test
+    public void levelsByNameOrNumber() {
+        MemoryTrimPolicy policy = new MemoryTrimPolicy("running_low=40,80=10");
+        assertEquals(40, policy.plan(MemoryTrimPolicy.RUNNING_LOW).keepPercent);
+        assertEquals(10, policy.plan(MemoryTrimPolicy.COMPLETE).keepPercent);
+        assertEquals("COMPLETE keep=10%", policy.plan(MemoryTrimPolicy.COMPLETE).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEntryWithoutValue() {
+        new MemoryTrimPolicy("RUNNING_LOW");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownLevel() {
+        new MemoryTrimPolicy("RUNNING_WILD=10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentOutOfRange() {
+        new MemoryTrimPolicy("COMPLETE=150");
+    }
+}
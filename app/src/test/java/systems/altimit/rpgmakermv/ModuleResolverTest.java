@@ -0,0 +1,59 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ModuleResolverTest {
+
+    private static ModuleResolver resolver(final Map<String, String> files) {
+        return new ModuleResolver(new ModuleResolver.Source() {
+            @Override
+            public boolean isFile(String id) {
+                return files.containsKey(id);
+            }
+
+            @Override
+            public String read(String id) {
+                return files.get(id);
+            }
+        });
+    }
+
+    @Test
+    public void readsTopLevelMain() {
+        assertEquals("lib/index.js", ModuleResolver.readMain("{\"main\": \"lib/index.js\"}"));
+        assertEquals("a\"b/cé.js", ModuleResolver.readMain("{\"main\":\"a\\\"b\\/c\\u00e9.js\"}"));
+        assertEquals("dist/x.js", ModuleResolver.readMain(
+                "{\n  \"name\": \"x\",\n  \"version\": 1.2,\n  \"private\": true,\n"
+                        + "  \"scripts\": {\"main\": \"nested.js\", \"list\": [1, {\"a\": \"}\"}]},\n"
+                        + "  \"main\": \"dist/x.js\"\n}"));
+    }
+
+    @Test
+    public void missingOrInvalidMainIsNull() {
+        assertNull(ModuleResolver.readMain("{}"));
+        assertNull(ModuleResolver.readMain("{\"name\": \"x\"}"));
+        assertNull(ModuleResolver.readMain("{\"main\": 3}"));
+        assertNull(ModuleResolver.readMain("[\"main\"]"));
+        assertNull(ModuleResolver.readMain("{\"main\": \"unterminated"));
+        assertNull(ModuleResolver.readMain(""));
+    }
+
+    @Test
+    public void resolvesPackageMainAndIndex() {
+        Map<String, String> files = new HashMap<>();
+        files.put("/js/libs/node_modules/foo/package.json", "{\"main\": \"./lib/foo\"}");
+        files.put("/js/libs/node_modules/foo/lib/foo.js", "");
+        files.put("/js/libs/node_modules/bar/package.json", "not json");
+        files.put("/js/libs/node_modules/bar/index.js", "");
+        ModuleResolver resolver = resolver(files);
+        assertEquals("/js/libs/node_modules/foo/lib/foo.js", resolver.resolve("foo", "/js/libs"));
+        assertEquals("/js/libs/node_modules/bar/index.js", resolver.resolve("bar", "/js/libs/sub"));
+        assertNull(resolver.resolve("baz", "/js/libs"));
+    }
+}
@@ -0,0 +1,103 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineRecorderTest {
+
+    // 每次读取前进指定的纳秒数
+    private static final class FakeClock implements TimelineRecorder.Clock {
+        long now = 1000000000L;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        void advanceMillis(long millis) {
+            now += millis * 1000000L;
+        }
+    }
+
+    @Test
+    public void eventsKeepRecordingOrder() {
+        FakeClock clock = new FakeClock();
+        TimelineRecorder timeline = new TimelineRecorder(true, 16, clock);
+        clock.advanceMillis(5);
+        timeline.record("activity.onCreate");
+        clock.advanceMillis(20);
+        timeline.record("page.started", "https://app/index.html");
+        clock.advanceMillis(100);
+        timeline.record("scene.start", "Scene_Title");
+
+        assertEquals(3, timeline.size());
+        assertEquals("{\"events\":["
+                + "{\"t\":5.000,\"name\":\"activity.onCreate\"},"
+                + "{\"t\":25.000,\"name\":\"page.started\",\"detail\":\"https://app/index.html\"},"
+                + "{\"t\":125.000,\"name\":\"scene.start\",\"detail\":\"Scene_Title\"}"
+                + "],\"dropped\":0}", timeline.toJson());
+
+        String[] lines = timeline.toText().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].contains("+   20.000 ms") && lines[1].endsWith("page.started https://app/index.html"));
+    }
+
+    @Test
+    public void jsonEscapesNamesAndDetails() {
+        TimelineRecorder timeline = new TimelineRecorder(true, 4, new FakeClock());
+        timeline.record("a\"b", "c\\d\ne");
+        assertEquals("{\"events\":[{\"t\":0.000,\"name\":\"a\\\"b\",\"detail\":\"c\\\\d\\u000ae\"}],\"dropped\":0}",
+                timeline.toJson());
+    }
+
+    @Test
+    public void keepsEarliestEventsWhenFull() {
+        TimelineRecorder timeline = new TimelineRecorder(true, 2, new FakeClock());
+        timeline.record("first");
+        timeline.record("second");
+        timeline.record("third");
+        assertEquals(2, timeline.size());
+        assertTrue(timeline.toJson().endsWith("\"dropped\":1}"));
+        assertFalse(timeline.toJson().contains("third"));
+    }
+
+    @Test
+    public void disabledRecorderIgnoresEventsButKeepsStartupMarks() {
+        FakeClock clock = new FakeClock();
+        TimelineRecorder timeline = new TimelineRecorder(false, 16, clock);
+        timeline.record("scene.start");
+        assertEquals(0, timeline.size());
+
+        timeline.markAgo(TimelineRecorder.PROCESS_START, 100);
+        clock.advanceMillis(50);
+        timeline.mark(TimelineRecorder.ACTIVITY_CREATE);
+        assertEquals("{\"processStart\":0,\"activityCreate\":150}", timeline.startupJson());
+        assertEquals(0, timeline.size());
+    }
+
+    @Test
+    public void marksRecordOnlyFirstOccurrenceInOrder() {
+        FakeClock clock = new FakeClock();
+        TimelineRecorder timeline = new TimelineRecorder(true, 16, clock);
+        assertTrue(timeline.mark(TimelineRecorder.PROCESS_START));
+        clock.advanceMillis(10);
+        assertTrue(timeline.mark(TimelineRecorder.ACTIVITY_CREATE));
+        clock.advanceMillis(10);
+        assertFalse(timeline.mark(TimelineRecorder.ACTIVITY_CREATE));
+        timeline.record("page.finished");
+        clock.advanceMillis(30);
+        assertTrue(timeline.mark(TimelineRecorder.SCENE_BOOT));
+
+        assertEquals("{\"processStart\":0,\"activityCreate\":10,\"sceneBoot\":50}", timeline.startupJson());
+        // 启动阶段同时出现在事件时间线中
+        assertEquals("{\"events\":["
+                + "{\"t\":0.000,\"name\":\"processStart\"},"
+                + "{\"t\":10.000,\"name\":\"activityCreate\"},"
+                + "{\"t\":20.000,\"name\":\"page.finished\"},"
+                + "{\"t\":50.000,\"name\":\"sceneBoot\"}"
+                + "],\"dropped\":0}", timeline.toJson());
+    }
+}
@@ -0,0 +1,125 @@
+package systems.altimit.rpgmakermv;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindQueueTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class RecordingListener implements WriteBehindQueue.Listener {
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicReference<File> failedFile = new AtomicReference<>();
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        @Override
+        public void onWritten(File file, String data) {
+            written.incrementAndGet();
+        }
+
+        @Override
+        public void onFailed(File file, String data, IOException error) {
+            failedFile.set(file);
+            failed.countDown();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void coalescesAndWritesLatest() throws IOException {
+        RecordingListener listener = new RecordingListener();
+        WriteBehindQueue queue = new WriteBehindQueue(listener);
+        File file = new File(folder.getRoot(), "save/file1.rpgsave");
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(file, "data" + i);
+        }
+        queue.flush();
+        assertEquals("data9", read(file));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void closeWritesPendingSaves() throws IOException {
+        RecordingListener listener = new RecordingListener();
+        WriteBehindQueue queue = new WriteBehindQueue(listener);
+        File file = new File(folder.getRoot(), "save/global.rpgsave");
+        queue.enqueue(file, "global");
+        queue.close();
+        assertEquals("global", read(file));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void failedWriteStaysVisibleAndIsRetried() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        WriteBehindQueue queue = new WriteBehindQueue(listener);
+        // 父路径是普通文件，写入必然失败
+        File blocker = folder.newFile("save");
+        File file = new File(blocker, "file1.rpgsave");
+        queue.enqueue(file, "data");
+
+        // 第一次失败后数据留在队列中
+        Thread.sleep(WriteBehindQueue.RETRY_DELAY_MILLIS / 2);
+        assertEquals("data", queue.peek(file.getPath()));
+        assertEquals(Collections.singleton("file1.rpgsave"), queue.pendingNames(blocker));
+
+        // 重试之前恢复可写，之后的重试成功
+        assertTrue(blocker.delete());
+        queue.flush();
+        assertEquals("data", read(file));
+        assertEquals(1, listener.written.get());
+        assertEquals(1, listener.failed.getCount());
+        assertTrue(queue.getStats().contains("\"failed\":0"));
+    }
+
+    @Test
+    public void reportsFailureAfterRetries() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        WriteBehindQueue queue = new WriteBehindQueue(listener);
+        File file = new File(folder.newFile("save"), "file1.rpgsave");
+        queue.enqueue(file, "data");
+
+        long maxBackoff = WriteBehindQueue.RETRY_DELAY_MILLIS << WriteBehindQueue.MAX_RETRIES;
+        assertTrue(listener.failed.await(maxBackoff * 4, TimeUnit.MILLISECONDS));
+        assertEquals(file, listener.failedFile.get());
+        queue.flush();
+        assertNull(queue.peek(file.getPath()));
+        assertTrue(queue.getStats().contains("\"retried\":" + WriteBehindQueue.MAX_RETRIES));
+        assertTrue(queue.getStats().contains("\"failed\":1"));
+    }
+
+    @Test
+    public void takeCancelsQueuedWrite() throws IOException {
+        RecordingListener listener = new RecordingListener();
+        WriteBehindQueue queue = new WriteBehindQueue(listener);
+        File dir = folder.newFolder("save");
+        File file = new File(dir, "file2.rpgsave");
+        queue.enqueue(file, "a");
+        queue.enqueue(file, "b");
+        String taken = queue.take(file.getPath());
+        queue.flush();
+        // 可能在 take 之前已经写入了一次，但之后不会再有写入
+        assertTrue("b".equals(taken) || taken == null && listener.written.get() == 1);
+        assertFalse(queue.isPending(file.getPath()));
+        assertTrue(queue.pendingNames(dir).isEmpty());
+    }
+}
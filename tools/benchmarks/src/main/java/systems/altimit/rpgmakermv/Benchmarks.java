@@ -0,0 +1,33 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.File;
+import java.util.Random;
+
+// 基准测试共用的数据和清理
+final class Benchmarks {
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private Benchmarks() {
+    }
+
+    // 与 StorageManager 写出的存档相同的字符分布（LZString.compressToBase64）
+    static String base64Text(int length) {
+        Random random = new Random(length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = BASE64[random.nextInt(BASE64.length)];
+        }
+        return new String(chars);
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
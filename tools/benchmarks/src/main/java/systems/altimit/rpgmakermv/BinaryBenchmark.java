@@ -0,0 +1,70 @@
+package systems.altimit.rpgmakermv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Buffer 的两种传输格式在 Java 端的开销：JavascriptInterface 的 latin1 字符串和 BinaryChannel 的 ArrayBuffer 帧
+// 内容是 0-255 的全部字节值，setUp 中确认两种格式都逐字节无损
+// 端到端（含 WebView 内的字符串拷贝和消息端口）的对比在设备上运行：DevTools 控制台中调用 AndroidFSBinary.benchmark()
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryBenchmark {
+    @Param({"1", "10", "50"})
+    public int sizeMb;
+
+    private byte[] data;
+    private String binaryString;
+    private byte[] writeRequest;
+
+    @Setup
+    public void setUp() {
+        data = new byte[sizeMb * 1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        binaryString = FileSystemCore.decode(data, "latin1");
+        writeRequest = FileSystemCore.binaryWriteRequest(1, "img/pictures/benchmark.rpgmvp", data);
+        if (!Arrays.equals(data, FileSystemCore.encode(binaryString, "latin1"))
+                || !Arrays.equals(data, FileSystemCore.parseBinaryWrite(writeRequest).data)) {
+            throw new IllegalStateException("Binary round trip lost data");
+        }
+    }
+
+    // readFileSync(path, 'latin1') 返回前的转换
+    @Benchmark
+    public String stringRead() {
+        return FileSystemCore.decode(data, "latin1");
+    }
+
+    // writeBinarySync 收到字符串后的转换
+    @Benchmark
+    public byte[] stringWrite() {
+        return FileSystemCore.encode(binaryString, "latin1");
+    }
+
+    @Benchmark
+    public byte[] channelRead() {
+        return FileSystemCore.binaryReadResponse(1, data);
+    }
+
+    @Benchmark
+    public byte[] channelWrite() {
+        return FileSystemCore.parseBinaryWrite(writeRequest).data;
+    }
+}
@@ -0,0 +1,78 @@
+package systems.altimit.rpgmakermv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// readFileSync/writeFileSync 的文件读写：1-20 MB 的存档（LZString 压缩后的 Base64 文本）
+// 冷读（读盘 + UTF-8 解码）、内容缓存命中、直接写入和存档的原子写入（临时文件 + fsync + rename）
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileIoBenchmark {
+    @Param({"1", "5", "20"})
+    public int sizeMb;
+
+    private File dir;
+    private File save;
+    private String data;
+    private FileContentCache cache;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("androidfs-bench").toFile();
+        save = new File(dir, "file1.rpgsave");
+        data = Benchmarks.base64Text(sizeMb * 1024 * 1024);
+        try (FileOutputStream fos = new FileOutputStream(save)) {
+            fos.write(data.getBytes(StandardCharsets.UTF_8));
+        }
+        cache = new FileContentCache(sizeMb * 1024L * 1024 * 8);
+        cache.put(save.getPath(), save.length(), save.lastModified(), data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Benchmarks.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public String readCold() throws IOException {
+        return new String(FileSystemCore.readFully(save), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String readCached() {
+        return cache.get(save.getPath(), save.length(), save.lastModified());
+    }
+
+    @Benchmark
+    public void writeDirect() throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(new File(dir, "direct.rpgsave"))) {
+            fos.write(data.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public void writeAtomically() throws IOException {
+        WriteBehindQueue.writeAtomically(new File(dir, "atomic.rpgsave"), data);
+    }
+}
@@ -0,0 +1,74 @@
+package systems.altimit.rpgmakermv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// readdirSync 的列表 JSON、statSync 的 JSON 和字符串转义
+// 目录规模从几十个到几千个文件（大型游戏的 img/pictures），文件名为 ASCII 或日文
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    // 目录列表：参数只作用于 listJson
+    @State(Scope.Benchmark)
+    public static class Listing {
+        @Param({"50", "5000"})
+        public int files;
+
+        @Param({"ascii", "japanese"})
+        public String names;
+
+        String[] list;
+
+        @Setup
+        public void setUp() {
+            list = new String[files];
+            for (int i = 0; i < files; i++) {
+                list[i] = names.equals("ascii")
+                        ? String.format("Picture_%05d.png", i)
+                        : String.format("立ち絵_%05d_表情.png", i);
+            }
+        }
+    }
+
+    // 64 KB 带引号、反斜杠、控制字符和日文的文本，接近存档和插件配置中的内容
+    private String text;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 64 * 1024; i++) {
+            sb.append("{\"name\":\"勇者_").append(i).append("\",\"note\":\"line\\n\\t\\\"quoted\\\"\"}\n");
+        }
+        text = sb.toString();
+    }
+
+    @Benchmark
+    public String listJson(Listing listing) {
+        return FileSystemCore.listJson(listing.list);
+    }
+
+    @Benchmark
+    public String statJson() {
+        return FileSystemCore.statJson(true, false, 1234567L, 1700000000000L);
+    }
+
+    @Benchmark
+    public String escapeJson() {
+        return FileSystemCore.escapeJson(text);
+    }
+}
@@ -0,0 +1,57 @@
+package systems.altimit.rpgmakermv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// getSafeFile 的规范化（FileSystemCore.resolveSafe）：每次桥接调用都会走一遍
+// 路径覆盖存档、带 ./ 前缀的资源、非 ASCII 文件名和越界路径
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+    @Param({"save/file1.rpgsave", "./www/img/pictures/Actor1_1.png", "www/img/pictures/立ち絵_勇者_01.png",
+            "../../../etc/passwd"})
+    public String path;
+
+    private File baseDir;
+    private String baseDirPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("androidfs-bench").toFile();
+        baseDirPath = baseDir.getCanonicalPath();
+        File target = new File(baseDir, path.replaceFirst("^[./]+", ""));
+        if (target.getCanonicalPath().startsWith(baseDirPath + File.separator)) {
+            target.getParentFile().mkdirs();
+            target.createNewFile();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Benchmarks.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public File resolveSafe() {
+        return FileSystemCore.resolveSafe(baseDir, baseDirPath, path);
+    }
+}
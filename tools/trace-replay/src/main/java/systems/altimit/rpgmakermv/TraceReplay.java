@@ -0,0 +1,499 @@
+package systems.altimit.rpgmakermv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// 在 JVM 上回放 BRIDGE_TRACE 录制的 AndroidFS 跟踪：
+// 先按跟踪内容在临时目录里准备游戏原有的文件，再按原顺序把每次调用交给 FileSystemBackend
+// （设备上 FileSystemInterface 背后的同一份实现：元数据缓存、内容缓存、延迟写入、文件描述符表、分层文件系统），
+// 输出吞吐量和各方法的延迟分位数（与设备上录制到的耗时对照）
+// 与设备的差别：没有 APK 资源层和补丁目录，元数据缓存假定没有外部写入者（不需要 FileObserver）
+// 异步请求按对应的同步方法当场执行，回放耗时是后台线程上的工作量，录制耗时只是投递
+public final class TraceReplay {
+    // 异步请求在设备上只记录投递，这里按对应的同步方法当场执行；取结果不涉及文件操作
+    private static final Set<String> NOT_REPLAYED = new HashSet<>(Arrays.asList("takeAsyncResult"));
+
+    private final File root;
+    private final String rootPath;
+    private final FileSystemBackend backend;
+    // 录制时的 fd -> 回放时的 fd
+    private final Map<Long, Integer> fds = new HashMap<>();
+
+    // 回放耗时和设备上录制到的耗时
+    private final BridgeProfiler replayed = new BridgeProfiler();
+    private final BridgeProfiler recorded = new BridgeProfiler();
+    private final Map<String, BridgeProfiler.Method> replayedMethods = new HashMap<>();
+    private final Map<String, BridgeProfiler.Method> recordedMethods = new HashMap<>();
+
+    private long replayedCalls;
+    private long skipped;
+    private long failed;
+    // 写入线程上计数
+    private volatile long writeFailures;
+    private long bytesRead;
+    private long bytesWritten;
+    private long replayNanos;
+    private long drainNanos;
+    private char[] fillerChars = new char[0];
+
+    // workDir 下建立 files/（应用目录）和 cache/（资源解压目录）；补丁目录 workDir/patches 不存在
+    public TraceReplay(File workDir, boolean metadataCache, long contentCacheBytes, boolean writeBehindSaves)
+            throws IOException {
+        this.root = new File(workDir, "files").getCanonicalFile();
+        if (!root.mkdirs() && !root.isDirectory()) {
+            throw new IOException("Cannot create " + root);
+        }
+        this.rootPath = root.getPath();
+        VirtualFileSystem vfs = new VirtualFileSystem(root, rootPath, VirtualFileSystem.NO_ASSETS, 0,
+                new File(new File(workDir, "cache"), VirtualFileSystem.EXTRACT_DIR));
+        this.backend = new FileSystemBackend(root, vfs,
+                metadataCache ? FileMetadataCache.NO_EXTERNAL_WRITERS : FileMetadataCache.DISABLED,
+                contentCacheBytes, writeBehindSaves, new FileSystemBackend.Listener() {
+                    @Override
+                    public void onWriteFailed(File file, IOException error) {
+                        writeFailures++;
+                    }
+                });
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceReplay <trace.afst> [--cache-kb N] [--no-metadata-cache]"
+                    + " [--no-write-behind] [--keep]");
+            System.exit(2);
+        }
+        long cacheKb = 8192;
+        boolean metadataCache = true;
+        boolean writeBehind = true;
+        boolean keep = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--keep")) {
+                keep = true;
+            } else if (args[i].equals("--no-metadata-cache")) {
+                metadataCache = false;
+            } else if (args[i].equals("--no-write-behind")) {
+                writeBehind = false;
+            } else if (args[i].equals("--cache-kb") && i + 1 < args.length) {
+                cacheKb = Long.parseLong(args[++i]);
+            }
+        }
+
+        List<BridgeTrace.Call> calls = load(new File(args[0]));
+        File workDir = Files.createTempDirectory("androidfs-replay").toFile();
+        TraceReplay replay = null;
+        try {
+            replay = new TraceReplay(workDir, metadataCache, cacheKb * 1024, writeBehind);
+            replay.seed(calls);
+            replay.run(calls);
+            for (String line : replay.report()) {
+                System.out.println(line);
+            }
+        } finally {
+            if (replay != null) {
+                replay.close();
+            }
+            if (keep) {
+                System.out.println("Replay directory kept at " + workDir);
+            } else {
+                deleteTree(workDir);
+            }
+        }
+    }
+
+    public static List<BridgeTrace.Call> load(File file) throws IOException {
+        List<BridgeTrace.Call> calls = new ArrayList<>();
+        try (BridgeTrace.Reader reader = new BridgeTrace.Reader(new FileInputStream(file))) {
+            BridgeTrace.Call call;
+            while ((call = reader.next()) != null) {
+                calls.add(call);
+            }
+        }
+        return calls;
+    }
+
+    // 根据跟踪推断开始录制前就存在的文件和目录（被成功读取、但此前没有被跟踪中的调用创建过）
+    // 在第一次调用之前直接写磁盘，元数据缓存此时还是空的
+    public void seed(List<BridgeTrace.Call> calls) throws IOException {
+        Set<String> created = new HashSet<>();
+        Map<String, Long> files = new HashMap<>();
+        Set<String> dirs = new HashSet<>();
+        Set<String> others = new HashSet<>();
+        Map<Long, String> openPaths = new HashMap<>();
+        // readFileAsync 的请求 id -> 路径（读到的大小记录在之后的 takeAsyncResult 里）
+        Map<Long, String> asyncPaths = new HashMap<>();
+
+        for (BridgeTrace.Call call : calls) {
+            String path = call.path != null ? resolve(call.path).getPath() : null;
+            boolean ok = call.result > 0;
+            switch (call.op) {
+                case "readFileSync":
+                    if (ok && !created.contains(path)) {
+                        files.put(path, Math.max(call.size, files.containsKey(path) ? files.get(path) : 0));
+                    }
+                    break;
+                case "readdirSync":
+                    if (ok && !created.contains(path)) {
+                        dirs.add(path);
+                    }
+                    break;
+                case "existsSync":
+                case "statSync":
+                case "unlinkSync":
+                case "copyFileSync":
+                    if (ok && !created.contains(path)) {
+                        others.add(path);
+                    }
+                    break;
+                case "rmdirSync":
+                    if (ok && !created.contains(path)) {
+                        dirs.add(path);
+                    }
+                    break;
+                case "renameSync":
+                    if (ok && !created.contains(path)) {
+                        others.add(path);
+                    }
+                    created.add(resolve(call.path2).getPath());
+                    break;
+                case "openSync":
+                    if (call.result >= 0) {
+                        openPaths.put(call.result, path);
+                        if (isReadFlags(call.path2) && !created.contains(path)) {
+                            files.put(path, files.containsKey(path) ? files.get(path) : 0L);
+                        } else {
+                            created.add(path);
+                        }
+                    }
+                    break;
+                case "readSync": {
+                    String opened = openPaths.get(call.arg);
+                    if (opened != null && files.containsKey(opened) && call.arg2 >= 0 && call.result > 0) {
+                        files.put(opened, Math.max(files.get(opened), call.arg2 + call.result));
+                    }
+                    break;
+                }
+                case "readFileAsync":
+                    if (!created.contains(path)) {
+                        asyncPaths.put(call.arg, path);
+                    }
+                    break;
+                case "takeAsyncResult": {
+                    String asyncPath = asyncPaths.remove(call.arg);
+                    if (asyncPath != null && ok) {
+                        files.put(asyncPath, Math.max(call.size,
+                                files.containsKey(asyncPath) ? files.get(asyncPath) : 0));
+                    }
+                    break;
+                }
+                case "batchSync":
+                    seedBatch(call.path, created, files, dirs, others);
+                    break;
+                case "resolveModule":
+                    if (ok) {
+                        // 只记录了请求和所在目录，没有记录解析结果：按相对路径加 .js 近似，大小取返回的 JSON 长度
+                        String module = moduleFile(call.path, call.path2);
+                        if (!created.contains(module)) {
+                            files.put(module, Math.max(call.size, files.containsKey(module) ? files.get(module) : 0));
+                        }
+                    }
+                    break;
+                case "writeFileSync":
+                case "writeFileAsync":
+                case "writeBinarySync":
+                case "appendFileSync":
+                case "mkdirSync":
+                case "mkdirAsync":
+                    created.add(path);
+                    break;
+                default:
+                    break;
+            }
+            if (call.op.equals("copyFileSync") && call.path2 != null) {
+                created.add(resolve(call.path2).getPath());
+            }
+        }
+
+        for (String dir : dirs) {
+            new File(dir).mkdirs();
+        }
+        for (Map.Entry<String, Long> entry : files.entrySet()) {
+            if (!new File(entry.getKey()).isDirectory()) {
+                writeFiller(new File(entry.getKey()), entry.getValue());
+            }
+        }
+        for (String path : others) {
+            // 只知道存在，不知道大小：目录按目录创建，其余当作空文件
+            if (!files.containsKey(path) && !new File(path).exists()) {
+                writeFiller(new File(path), 0);
+            }
+        }
+    }
+
+    private void seedBatch(String ops, Set<String> created, Map<String, Long> files,
+                           Set<String> dirs, Set<String> others) {
+        if (ops == null) {
+            return;
+        }
+        List<String> parsed = FileSystemCore.parseBatch(ops);
+        for (int i = 0; i < parsed.size(); i += 2) {
+            char op = parsed.get(i).charAt(0);
+            String path = resolve(parsed.get(i + 1)).getPath();
+            if (created.contains(path)) {
+                continue;
+            }
+            // 批量调用的结果没有逐项记录，假定都存在
+            if (op == 'd') {
+                dirs.add(path);
+            } else if (op == 'r') {
+                if (!files.containsKey(path)) {
+                    files.put(path, 0L);
+                }
+            } else {
+                others.add(path);
+            }
+        }
+    }
+
+    private String moduleFile(String request, String parentDir) {
+        String base = parentDir != null && parentDir.startsWith("/") ? parentDir : "/";
+        String id = ModuleResolver.normalize(request.startsWith("/") ? request : base + "/" + request);
+        if (!id.endsWith(".js") && !id.endsWith(".json")) {
+            id += ".js";
+        }
+        return resolve(id).getPath();
+    }
+
+    // 计时包括最后等待延迟写入落盘的时间
+    public void run(List<BridgeTrace.Call> calls) {
+        long start = System.nanoTime();
+        for (BridgeTrace.Call call : calls) {
+            method(recordedMethods, recorded, call.op).record(call.duration, 0, 0);
+            if (NOT_REPLAYED.contains(call.op)) {
+                skipped++;
+                continue;
+            }
+            // 写入的数据在计时之前准备好
+            String data = needsData(call.op) ? filler(call.size) : null;
+            BridgeProfiler.Method method = method(replayedMethods, replayed, call.op);
+            long begin = replayed.begin();
+            try {
+                replay(call, data);
+            } catch (RuntimeException e) {
+                failed++;
+            }
+            replayed.end(method, begin, 0, 0);
+            replayedCalls++;
+        }
+        long drainStart = System.nanoTime();
+        backend.flushWrites();
+        long end = System.nanoTime();
+        drainNanos = end - drainStart;
+        replayNanos = end - start;
+    }
+
+    private void replay(BridgeTrace.Call call, String data) {
+        switch (call.op) {
+            case "readFileSync":
+            case "readFileAsync":
+                bytesRead += length(backend.readFileSync(call.path, call.path2));
+                break;
+            case "writeFileSync":
+            case "writeFileAsync":
+                written(backend.writeFileSync(call.path, data), data);
+                break;
+            case "writeBinarySync":
+                written(backend.writeBinarySync(call.path, data), data);
+                break;
+            case "existsSync":
+                backend.existsSync(call.path);
+                break;
+            case "statSync":
+            case "statAsync":
+                backend.statSync(call.path);
+                break;
+            case "readdirSync":
+            case "readdirAsync":
+                backend.readdirSync(call.path);
+                break;
+            case "mkdirSync":
+            case "mkdirAsync":
+                backend.mkdirSync(call.path);
+                break;
+            case "unlinkSync":
+            case "unlinkAsync":
+                backend.unlinkSync(call.path);
+                break;
+            case "rmdirSync":
+            case "rmdirAsync":
+                backend.rmdirSync(call.path);
+                break;
+            case "renameSync":
+                backend.renameSync(call.path, call.path2);
+                break;
+            case "appendFileSync":
+                written(backend.appendFileSync(call.path, data), data);
+                break;
+            case "copyFileSync":
+                backend.copyFileSync(call.path, call.path2);
+                break;
+            case "truncateSync":
+                backend.truncateSync(call.path, call.arg);
+                break;
+            case "openSync":
+                if (call.result >= 0) {
+                    int fd = backend.openSync(call.path, call.path2);
+                    if (fd >= 0) {
+                        fds.put(call.result, fd);
+                    }
+                }
+                break;
+            case "readSync":
+            case "readAsync": {
+                Integer fd = fds.get(call.arg);
+                if (fd != null) {
+                    bytesRead += length(backend.readSync(fd, (int) call.size, call.arg2));
+                }
+                break;
+            }
+            case "writeSync": {
+                Integer fd = fds.get(call.arg);
+                if (fd != null) {
+                    bytesWritten += Math.max(0, backend.writeSync(fd, data, call.arg2, call.path2));
+                }
+                break;
+            }
+            case "closeSync": {
+                Integer fd = fds.remove(call.arg);
+                if (fd != null) {
+                    backend.closeSync(fd);
+                }
+                break;
+            }
+            case "fstatSync": {
+                Integer fd = fds.get(call.arg);
+                if (fd != null) {
+                    backend.fstatSync(fd);
+                }
+                break;
+            }
+            case "batchSync":
+                if (call.path != null) {
+                    backend.batchSync(call.path);
+                }
+                break;
+            case "resolveModule":
+                bytesRead += length(backend.resolveModule(call.path, call.path2));
+                break;
+            default:
+                skipped++;
+                break;
+        }
+    }
+
+    private void written(boolean ok, String data) {
+        if (ok) {
+            bytesWritten += data.length();
+        } else {
+            failed++;
+        }
+    }
+
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        double seconds = replayNanos / 1e9;
+        lines.add(String.format(Locale.ROOT, "Replayed %d calls in %.1f ms (%d not replayed, %d failed)",
+                replayedCalls, replayNanos / 1e6, skipped, failed));
+        lines.add(String.format(Locale.ROOT, "Write-behind drain: %.1f ms (%d writes failed)",
+                drainNanos / 1e6, writeFailures));
+        if (seconds > 0) {
+            lines.add(String.format(Locale.ROOT, "Throughput: %.0f calls/s, read %.2f MB/s, written %.2f MB/s",
+                    replayedCalls / seconds, bytesRead / 1e6 / seconds, bytesWritten / 1e6 / seconds));
+        }
+        lines.add("Caches: {" + backend.getCacheStats() + "}");
+        lines.add("");
+        lines.add("Replay (JVM):");
+        lines.addAll(replayed.summary());
+        lines.add("");
+        lines.add("Recorded (device):");
+        lines.addAll(recorded.summary());
+        return lines;
+    }
+
+    public void close() {
+        backend.close();
+    }
+
+    private File resolve(String path) {
+        return FileSystemCore.resolveSafe(root, rootPath, path != null ? path : "");
+    }
+
+    private static long length(String s) {
+        return s != null ? s.length() : 0;
+    }
+
+    private String filler(long size) {
+        int length = (int) Math.min(size, FileSystemCore.READ_FILE_LIMIT);
+        if (fillerChars.length < length) {
+            fillerChars = new char[Math.max(length, fillerChars.length * 2)];
+            for (int i = 0; i < fillerChars.length; i++) {
+                fillerChars[i] = (i % 64 == 63) ? '\n' : (char) ('a' + i % 26);
+            }
+        }
+        return new String(fillerChars, 0, length);
+    }
+
+    private void writeFiller(File file, long size) throws IOException {
+        mkParent(file);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(filler(size).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static boolean needsData(String op) {
+        return op.equals("writeFileSync") || op.equals("writeFileAsync") || op.equals("writeBinarySync")
+                || op.equals("appendFileSync") || op.equals("writeSync");
+    }
+
+    private static boolean isReadFlags(String flags) {
+        return flags == null || flags.isEmpty() || flags.startsWith("r");
+    }
+
+    private static void mkParent(File file) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+    }
+
+    private static BridgeProfiler.Method method(Map<String, BridgeProfiler.Method> methods,
+                                                BridgeProfiler profiler, String name) {
+        BridgeProfiler.Method method = methods.get(name);
+        if (method == null) {
+            method = profiler.register(name);
+            methods.put(name, method);
+        }
+        return method;
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}